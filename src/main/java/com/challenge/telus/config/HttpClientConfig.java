@@ -0,0 +1,150 @@
+package com.challenge.telus.config;
+
+import com.challenge.telus.services.ApiRateLimiter;
+import com.challenge.telus.utils.HedgedAttempt;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.component.http.HttpComponent;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.message.MessageSupport;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+
+/**
+ * Configuración del cliente HTTP compartido por el extractor
+ * Todas las llamadas a la API de usuarios usan el mismo pool de conexiones keep-alive,
+ * con compresión gzip transparente y timeouts configurables.
+ * Cada request (incluidos los reintentos) pasa por el rate limiter de la API
+ */
+@Slf4j
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Componente "http" de Camel con un único pool de conexiones para todos los endpoints
+     */
+    @Bean(name = "http")
+    public HttpComponent httpComponent(
+            ApiRateLimiter rateLimiter,
+            @Value("${extractor.http.max-connections:20}") Integer maxConnections,
+            @Value("${extractor.http.connections-per-route:10}") Integer connectionsPerRoute,
+            @Value("${extractor.http.connect-timeout:5000}") Long connectTimeout,
+            @Value("${extractor.http.read-timeout:30000}") Long readTimeout,
+            @Value("${extractor.http.connection-request-timeout:10000}") Long connectionRequestTimeout,
+            @Value("${extractor.http.keep-alive:60000}") Long keepAlive,
+            @Value("${extractor.http.time-to-live:300000}") Long timeToLive) {
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(connectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .setTimeToLive(TimeValue.ofMilliseconds(timeToLive))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        HttpComponent component = new HttpComponent();
+        component.setClientConnectionManager(connectionManager);
+        component.setMaxTotalConnections(maxConnections);
+        component.setConnectionsPerRoute(connectionsPerRoute);
+        component.setConnectionTimeToLive(timeToLive);
+        component.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout));
+        component.setSoTimeout(Timeout.ofMilliseconds(readTimeout));
+        component.setResponseTimeout(Timeout.ofMilliseconds(readTimeout));
+        component.setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeout));
+
+        // El cliente envía Accept-Encoding: gzip y descomprime la respuesta de forma transparente
+        component.setContentCompressionDisabled(false);
+
+        component.setHttpClientConfigurer(builder -> builder
+                .setKeepAliveStrategy((response, context) -> keepAliveFromResponse(response, keepAlive))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive))
+                .addExecInterceptorFirst("rate-limiter",
+                        (request, scope, chain) -> executeRateLimited(rateLimiter, request, scope, chain)));
+
+        log.info("Cliente HTTP del extractor configurado - Conexiones: {} ({} por host), Connect timeout: {} ms, Read timeout: {} ms",
+                maxConnections, connectionsPerRoute, connectTimeout, readTimeout);
+
+        return component;
+    }
+
+    /**
+     * Ejecuta el request dentro del rate limiter y le informa el resultado
+     * El slot de concurrencia se libera al recibir la respuesta, antes de leer el body
+     */
+    private ClassicHttpResponse executeRateLimited(ApiRateLimiter rateLimiter, ClassicHttpRequest request,
+                                                   ExecChain.Scope scope, ExecChain chain) throws IOException, HttpException {
+        // Un intento hedged perdedor puede abortarse mientras espera o envía el request
+        HedgedAttempt.registerRequest(scope.originalRequest);
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando al rate limiter");
+        }
+
+        try {
+            ClassicHttpResponse response = chain.proceed(request, scope);
+            rateLimiter.onResponse(response.getCode(), retryAfterSeconds(response));
+            return response;
+        } catch (InterruptedIOException e) {
+            // Abortar el intento perdedor no es un timeout de la API
+            if (!HedgedAttempt.isCurrentCancelled()) {
+                rateLimiter.onTimeout();
+            }
+            throw e;
+        } finally {
+            rateLimiter.release();
+        }
+    }
+
+    /**
+     * Lee el header Retry-After en segundos (el formato de fecha HTTP se ignora)
+     */
+    private Long retryAfterSeconds(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.getValue().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Respeta el timeout del header Keep-Alive del servidor, o usa el configurado por defecto
+     */
+    private TimeValue keepAliveFromResponse(HttpResponse response, Long defaultKeepAlive) {
+        Iterator<HeaderElement> elements = MessageSupport.iterate(response, "Keep-Alive");
+        while (elements.hasNext()) {
+            HeaderElement element = elements.next();
+            if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                try {
+                    return TimeValue.ofSeconds(Long.parseLong(element.getValue()));
+                } catch (NumberFormatException e) {
+                    log.debug("Header Keep-Alive inválido: {}", element.getValue());
+                }
+            }
+        }
+        return TimeValue.ofMilliseconds(defaultKeepAlive);
+    }
+}
@@ -0,0 +1,59 @@
+package com.challenge.telus.config;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aplica el modo de ejecución configurado en extractor.threads.mode (platform o virtual)
+ * En modo virtual, los pools de Camel (rutas, splits paralelos, consumidor de Kafka y
+ * jobs de extracción) y los hilos de Spring (Tomcat, @Scheduled) usan virtual threads, y el
+ * perfil de pool por defecto de Camel toma los tamaños de extractor.threads.virtual-pool.*
+ * (salvo que camel.threadpool.* ya esté configurado). En modo platform no se toca nada.
+ * Camel lee su propiedad de sistema una sola vez al cargar sus clases, por eso se
+ * define acá, antes de que se cree el contexto.
+ */
+public class ThreadingModeEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String MODE_PROPERTY = "extractor.threads.mode";
+    static final String CAMEL_VIRTUAL_THREADS = "camel.threads.virtual.enabled";
+    static final String VIRTUAL_POOL_PREFIX = "extractor.threads.virtual-pool.";
+    static final String CAMEL_THREADPOOL_PREFIX = "camel.threadpool.";
+    static final Map<String, String> VIRTUAL_POOL_DEFAULTS = Map.of(
+            "pool-size", "10",
+            "max-pool-size", "50",
+            "max-queue-size", "1000");
+
+    private final Log log;
+
+    public ThreadingModeEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(ThreadingModeEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        String mode = environment.getProperty(MODE_PROPERTY, "platform");
+        if (!"virtual".equalsIgnoreCase(mode)) {
+            log.info("Modo de ejecución: platform threads");
+            return;
+        }
+
+        System.setProperty(CAMEL_VIRTUAL_THREADS, "true");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.threads.virtual.enabled", "true");
+        VIRTUAL_POOL_DEFAULTS.forEach((name, defaultValue) -> {
+            if (!environment.containsProperty(CAMEL_THREADPOOL_PREFIX + name)) {
+                properties.put(CAMEL_THREADPOOL_PREFIX + name,
+                        environment.getProperty(VIRTUAL_POOL_PREFIX + name, defaultValue));
+            }
+        });
+        environment.getPropertySources().addFirst(new MapPropertySource("extractorThreadingMode", properties));
+        log.info("Modo de ejecución: virtual threads (Camel y Spring)");
+    }
+}
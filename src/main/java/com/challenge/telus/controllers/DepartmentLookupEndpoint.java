@@ -0,0 +1,37 @@
+package com.challenge.telus.controllers;
+
+import com.challenge.telus.services.DepartmentLookupService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Endpoint de actuator con el estado de la búsqueda de departamentos
+ * GET  /actuator/departments: aciertos y fallos (departamentos que caen al código por defecto)
+ * POST /actuator/departments: recarga el CSV sin esperar la verificación periódica
+ */
+@Component
+@Endpoint(id = "departments")
+public class DepartmentLookupEndpoint {
+
+    private final DepartmentLookupService departmentLookupService;
+
+    public DepartmentLookupEndpoint(DepartmentLookupService departmentLookupService) {
+        this.departmentLookupService = departmentLookupService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> lookups() {
+        return departmentLookupService.getLookupStats();
+    }
+
+    @WriteOperation
+    public Map<String, Object> reload() {
+        boolean reloaded = departmentLookupService.reload();
+        Map<String, Object> stats = departmentLookupService.getLookupStats();
+        return Map.of("reloaded", reloaded, "departments", stats.get("departments"), "loadedAt", stats.get("loadedAt"));
+    }
+}
@@ -1,76 +1,123 @@
 package com.challenge.telus.controllers;
 
+import com.challenge.telus.models.ExtractionJob;
+import com.challenge.telus.services.ExtractionJobService;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.camel.ProducerTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Controlador REST para disparar manualmente la extracción de usuarios
  * Útil para testing sin esperar al cron
+ * La extracción corre como job asíncrono: el disparo devuelve el ID del job de inmediato
  */
 @Slf4j
 @RestController
 @RequestMapping("/api/extraction")
 public class ExtractionController {
-    
+
     @Autowired
-    private ProducerTemplate producerTemplate;
-    
+    private ExtractionJobService jobService;
+
     /**
      * Endpoint para disparar manualmente la extracción
      * POST http://localhost:8080/api/extraction/trigger
+     * Si ya hay una extracción en curso, devuelve el job existente
      */
     @PostMapping("/trigger")
     public ResponseEntity<Map<String, Object>> triggerExtraction() {
         log.info("Disparando extracción manual de usuarios");
-        
+
         try {
-            // Disparar la ruta de extracción
-            producerTemplate.sendBody("direct:extract-users", "");
-            
+            ExtractionJobService.Submission submission = jobService.submit("manual");
+            ExtractionJob job = submission.job();
+            boolean coalesced = submission.coalesced();
+
             Map<String, Object> response = new HashMap<>();
-            response.put("status", "success");
-            response.put("message", "Extracción iniciada exitosamente");
+            response.put("status", "accepted");
+            response.put("jobId", job.getJobId());
+            response.put("jobStatus", job.getStatus());
+            response.put("coalesced", coalesced);
+            response.put("message", coalesced
+                    ? "Ya hay una extracción en curso, se devuelve el job existente"
+                    : "Extracción iniciada exitosamente");
+            response.put("statusUrl", "/api/extraction/jobs/" + job.getJobId());
             response.put("timestamp", java.time.LocalDateTime.now());
-            
-            log.info("Extracción manual completada exitosamente");
-            return ResponseEntity.ok(response);
-            
+
+            return ResponseEntity.accepted().body(response);
+
         } catch (Exception e) {
             log.error("Error al disparar extracción manual", e);
-            
+
             Map<String, Object> response = new HashMap<>();
             response.put("status", "error");
             response.put("message", "Error al iniciar extracción: " + e.getMessage());
             response.put("timestamp", java.time.LocalDateTime.now());
-            
+
             return ResponseEntity.status(500).body(response);
         }
     }
-    
+
+    /**
+     * Endpoint para consultar un job de extracción
+     * GET http://localhost:8080/api/extraction/jobs/{jobId}
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        return jobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(describeJob(job)))
+                .orElseGet(() -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("status", "not_found");
+                    response.put("message", "No existe el job de extracción " + jobId);
+                    return ResponseEntity.status(404).body(response);
+                });
+    }
+
+    /**
+     * Endpoint para listar los jobs recientes
+     * GET http://localhost:8080/api/extraction/jobs
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<ExtractionJob>> getJobs() {
+        return ResponseEntity.ok(jobService.getJobs());
+    }
+
     /**
      * Endpoint para verificar el estado de la extracción
      * GET http://localhost:8080/api/extraction/status
+     * Devuelve el job actual (o el último) con su progreso en vivo
      */
     @RequestMapping("/status")
     public ResponseEntity<Map<String, Object>> getStatus() {
-        log.info("Consultando estado de extracción");
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "available");
-        response.put("message", "Sistema de extracción operativo");
+        log.debug("Consultando estado de extracción");
+
+        Map<String, Object> response = jobService.getCurrentJob()
+                .map(this::describeJob)
+                .orElseGet(HashMap::new);
+        response.putIfAbsent("status", "idle");
         response.put("timestamp", java.time.LocalDateTime.now());
-        
+
         return ResponseEntity.ok(response);
     }
-}
-
-
 
+    /**
+     * Arma la respuesta de un job con su progreso
+     */
+    private Map<String, Object> describeJob(ExtractionJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", job.getStatus());
+        response.put("job", job);
+        response.put("progress", jobService.getProgress(job));
+        return response;
+    }
+}
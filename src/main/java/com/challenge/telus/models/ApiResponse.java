@@ -1,5 +1,6 @@
 package com.challenge.telus.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,6 +26,27 @@ public class ApiResponse {
     
     private Integer limit;
     
+    /**
+     * Usuarios de la página copiados tal cual como líneas JSONL (solo en modo streaming)
+     */
+    @JsonIgnore
+    private byte[] rawUsers;
+    
+    /**
+     * Cantidad de usuarios contenidos en rawUsers
+     */
+    @JsonIgnore
+    private int rawUserCount;
+    
+    /**
+     * Obtiene la cantidad de usuarios de la página, sin importar el modo de parseo
+     * @return tamaño de users o rawUserCount en modo streaming
+     */
+    @JsonIgnore
+    public int getUserCount() {
+        return users != null ? users.size() : rawUserCount;
+    }
+    
     /**
      * Verifica si hay más páginas por procesar
      * @return true si skip + limit < total
@@ -46,7 +68,7 @@ public class ApiResponse {
      * @return true si no hay usuarios o la lista está vacía
      */
     public boolean isEmpty() {
-        return users == null || users.isEmpty();
+        return getUserCount() == 0;
     }
 }
 
@@ -0,0 +1,78 @@
+package com.challenge.telus.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Ejecución de una extracción disparada por el cron o por la API
+ * Los disparos concurrentes se unen al job en curso en lugar de crear uno nuevo
+ */
+@Data
+@NoArgsConstructor
+public class ExtractionJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private String jobId;
+
+    /**
+     * Origen del disparo (manual o scheduled)
+     */
+    private String trigger;
+
+    private Status status;
+
+    /**
+     * Cantidad de disparos adicionales que se unieron a este job
+     */
+    private int coalescedTriggers;
+
+    private String errorMessage;
+
+    /**
+     * ID de la corrida distribuida asociada (solo en modo distribuido)
+     */
+    private String runId;
+
+    @JsonProperty("submittedAt")
+    private LocalDateTime submittedAt;
+
+    @JsonProperty("startedAt")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("finishedAt")
+    private LocalDateTime finishedAt;
+
+    /**
+     * Registros y páginas ya procesados al iniciar el job (distintos de cero al reanudar),
+     * para calcular las velocidades solo con el trabajo de este job
+     */
+    private int baselineRecords;
+
+    private int baselinePages;
+
+    /**
+     * Crea un job nuevo en estado QUEUED
+     */
+    public static ExtractionJob create(String trigger) {
+        ExtractionJob job = new ExtractionJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setTrigger(trigger);
+        job.setStatus(Status.QUEUED);
+        job.setSubmittedAt(LocalDateTime.now());
+        return job;
+    }
+
+    /**
+     * Verifica si el job todavía no terminó
+     */
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+}
@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Modelo para manejar el estado de la extracción resumible
@@ -28,10 +30,16 @@ public class ExtractionState {
     private Integer totalRecords;
     
     /**
-     * Límite de registros por página
+     * Límite de registros por página vigente (puede variar en modo adaptativo)
      */
     private Integer limit;
     
+    /**
+     * Tamaño real de la última página procesada, usado para calcular el siguiente skip
+     * cuando las páginas tienen tamaño variable
+     */
+    private Integer lastPageLimit;
+    
     /**
      * Timestamp de la última actualización
      */
@@ -53,6 +61,47 @@ public class ExtractionState {
      */
     private Integer recordsProcessed;
     
+    /**
+     * Usuarios sin cambios omitidos por la extracción delta
+     */
+    private Integer recordsSkipped;
+    
+    /**
+     * Páginas confirmadas en esta extracción
+     */
+    private Integer pagesProcessed;
+    
+    /**
+     * Errores al obtener páginas (cada intento fallido, incluidos los reintentos)
+     */
+    private Integer errorCount;
+    
+    /**
+     * Segmento JSONL de salida en escritura (nombre final, se escribe como .part hasta rotar)
+     */
+    private String outputFile;
+    
+    /**
+     * Bytes del segmento de salida confirmados junto con este checkpoint
+     * Al reanudar, todo lo escrito después de esta posición se descarta
+     */
+    private Long outputBytes;
+    
+    /**
+     * Número del segmento de salida en escritura (empieza en 1)
+     */
+    private Integer outputSegment;
+    
+    /**
+     * Registros escritos en el segmento de salida en escritura
+     */
+    private Integer outputSegmentRecords;
+    
+    /**
+     * Segmentos de salida ya rotados y publicados en el directorio de salida
+     */
+    private List<String> completedSegments;
+    
     /**
      * Timestamp de inicio de la extracción
      */
@@ -76,11 +125,40 @@ public class ExtractionState {
         state.setInProgress(true);
         state.setCompleted(false);
         state.setRecordsProcessed(0);
+        state.setRecordsSkipped(0);
+        state.setPagesProcessed(0);
+        state.setErrorCount(0);
         state.setStartTime(LocalDateTime.now());
         state.setLastUpdated(LocalDateTime.now());
         return state;
     }
     
+    /**
+     * Copia independiente del estado (el servicio de estado guarda y entrega copias)
+     */
+    public synchronized ExtractionState copy() {
+        ExtractionState copy = new ExtractionState();
+        copy.setLastSuccessfulSkip(lastSuccessfulSkip);
+        copy.setTotalRecords(totalRecords);
+        copy.setLimit(limit);
+        copy.setLastPageLimit(lastPageLimit);
+        copy.setLastUpdated(lastUpdated);
+        copy.setInProgress(inProgress);
+        copy.setCompleted(completed);
+        copy.setRecordsProcessed(recordsProcessed);
+        copy.setRecordsSkipped(recordsSkipped);
+        copy.setPagesProcessed(pagesProcessed);
+        copy.setErrorCount(errorCount);
+        copy.setOutputFile(outputFile);
+        copy.setOutputBytes(outputBytes);
+        copy.setOutputSegment(outputSegment);
+        copy.setOutputSegmentRecords(outputSegmentRecords);
+        copy.setCompletedSegments(completedSegments != null ? new ArrayList<>(completedSegments) : null);
+        copy.setStartTime(startTime);
+        copy.setEndTime(endTime);
+        return copy;
+    }
+    
     /**
      * Verifica si la extracción está completa
      */
@@ -94,7 +172,7 @@ public class ExtractionState {
      */
     @JsonIgnore
     public boolean hasMorePages() {
-        return lastSuccessfulSkip + limit < totalRecords;
+        return getNextSkip() < totalRecords;
     }
     
     /**
@@ -102,7 +180,16 @@ public class ExtractionState {
      */
     @JsonIgnore
     public Integer getNextSkip() {
-        return lastSuccessfulSkip + limit;
+        return lastSuccessfulSkip + (lastPageLimit != null ? lastPageLimit : limit);
+    }
+    
+    /**
+     * Obtiene el skip desde el que debe continuar una extracción nueva o reanudada
+     * Si ya se confirmó alguna página, se continúa en la siguiente para no duplicarla
+     */
+    @JsonIgnore
+    public Integer getResumeSkip() {
+        return lastPageLimit != null ? getNextSkip() : lastSuccessfulSkip;
     }
     
     /**
@@ -118,9 +205,18 @@ public class ExtractionState {
     /**
      * Actualiza el progreso después de procesar una página exitosamente
      */
-    public void updateProgress(Integer skip, Integer recordsProcessed) {
+    public void updateProgress(Integer skip, Integer recordsProcessed, Integer pageLimit) {
         this.lastSuccessfulSkip = skip;
         this.recordsProcessed = recordsProcessed;
+        this.lastPageLimit = pageLimit;
+        this.pagesProcessed = (pagesProcessed != null ? pagesProcessed : 0) + 1;
         this.lastUpdated = LocalDateTime.now();
     }
+    
+    /**
+     * Registra un error al obtener una página (puede llamarse desde varios hilos)
+     */
+    public synchronized void incrementErrorCount() {
+        this.errorCount = (errorCount != null ? errorCount : 0) + 1;
+    }
 }
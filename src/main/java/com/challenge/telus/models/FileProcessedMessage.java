@@ -37,8 +37,47 @@ public class FileProcessedMessage {
     @JsonProperty("invalidRecords")
     private Integer invalidRecords;
     
+    /**
+     * Usuarios descartados o enviados a la DLQ por tener un id ya procesado
+     */
+    @JsonProperty("duplicateRecords")
+    private Integer duplicateRecords;
+    
     @JsonProperty("processingDate")
     private LocalDateTime processingDate;
+    
+    /**
+     * Compresión del archivo raw (none o gzip)
+     */
+    @JsonProperty("rawCompression")
+    private String rawCompression;
+    
+    /**
+     * Compresión de los archivos processed y dlq (none o gzip)
+     */
+    @JsonProperty("compression")
+    private String compression;
+    
+    /**
+     * Bytes en disco de cada archivo; los de processed y dlq se cuentan al escribirlos
+     */
+    @JsonProperty("rawFileBytes")
+    private Long rawFileBytes;
+    
+    @JsonProperty("processedFileBytes")
+    private Long processedFileBytes;
+    
+    @JsonProperty("dlqFileBytes")
+    private Long dlqFileBytes;
+    
+    /**
+     * CRC32C (hexadecimal) de los bytes en disco, calculado durante la escritura
+     */
+    @JsonProperty("processedFileChecksum")
+    private String processedFileChecksum;
+    
+    @JsonProperty("dlqFileChecksum")
+    private String dlqFileChecksum;
 }
 
 
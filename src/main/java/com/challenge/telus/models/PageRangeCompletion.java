@@ -0,0 +1,119 @@
+package com.challenge.telus.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro del topic de completitud de la extracción distribuida
+ * Reemplaza al checkpoint local: el plan de la corrida (PLANNED), cada rango terminado
+ * (COMPLETED) y cada rango que agotó sus intentos (FAILED) quedan en Kafka, así cualquier
+ * instancia puede reconstruir el progreso
+ */
+@Data
+@NoArgsConstructor
+public class PageRangeCompletion {
+
+    public enum Type {
+        PLANNED, COMPLETED, FAILED
+    }
+
+    @JsonProperty("type")
+    private Type type;
+
+    @JsonProperty("runId")
+    private String runId;
+
+    /**
+     * Índice del rango completado (null en el registro del plan)
+     */
+    @JsonProperty("rangeIndex")
+    private Integer rangeIndex;
+
+    @JsonProperty("rangeCount")
+    private Integer rangeCount;
+
+    @JsonProperty("totalRecords")
+    private Integer totalRecords;
+
+    @JsonProperty("limit")
+    private Integer limit;
+
+    @JsonProperty("rangePages")
+    private Integer rangePages;
+
+    @JsonProperty("records")
+    private Integer records;
+
+    @JsonProperty("outputFile")
+    private String outputFile;
+
+    @JsonProperty("workerId")
+    private String workerId;
+
+    /**
+     * Error del último intento (solo en los rangos FAILED)
+     */
+    @JsonProperty("error")
+    private String error;
+
+    /**
+     * Intentos realizados (solo en los rangos FAILED)
+     */
+    @JsonProperty("attempts")
+    private Integer attempts;
+
+    @JsonProperty("timestamp")
+    private LocalDateTime timestamp;
+
+    /**
+     * Crea el registro con el plan de una corrida
+     */
+    public static PageRangeCompletion planned(String runId, int rangeCount, int totalRecords, int limit, int rangePages) {
+        PageRangeCompletion record = new PageRangeCompletion();
+        record.setType(Type.PLANNED);
+        record.setRunId(runId);
+        record.setRangeCount(rangeCount);
+        record.setTotalRecords(totalRecords);
+        record.setLimit(limit);
+        record.setRangePages(rangePages);
+        record.setTimestamp(LocalDateTime.now());
+        return record;
+    }
+
+    /**
+     * Crea el registro de un rango terminado
+     */
+    public static PageRangeCompletion completed(PageRangeTask task, int records, String outputFile, String workerId) {
+        PageRangeCompletion record = new PageRangeCompletion();
+        record.setType(Type.COMPLETED);
+        record.setRunId(task.getRunId());
+        record.setRangeIndex(task.getRangeIndex());
+        record.setRangeCount(task.getRangeCount());
+        record.setLimit(task.getLimit());
+        record.setRecords(records);
+        record.setOutputFile(outputFile);
+        record.setWorkerId(workerId);
+        record.setTimestamp(LocalDateTime.now());
+        return record;
+    }
+
+    /**
+     * Crea el registro de un rango que agotó sus intentos
+     */
+    public static PageRangeCompletion failed(PageRangeTask task, int attempts, String error, String workerId) {
+        PageRangeCompletion record = new PageRangeCompletion();
+        record.setType(Type.FAILED);
+        record.setRunId(task.getRunId());
+        record.setRangeIndex(task.getRangeIndex());
+        record.setRangeCount(task.getRangeCount());
+        record.setLimit(task.getLimit());
+        record.setAttempts(attempts);
+        record.setError(error);
+        record.setWorkerId(workerId);
+        record.setTimestamp(LocalDateTime.now());
+        return record;
+    }
+}
@@ -0,0 +1,44 @@
+package com.challenge.telus.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Item de trabajo de la extracción distribuida: un rango de páginas [startSkip, endSkip)
+ * Lo publica el coordinador en Kafka y lo descarga cualquier instancia del extractor
+ */
+@Data
+@NoArgsConstructor
+public class PageRangeTask {
+
+    @JsonProperty("runId")
+    private String runId;
+
+    @JsonProperty("rangeIndex")
+    private Integer rangeIndex;
+
+    @JsonProperty("rangeCount")
+    private Integer rangeCount;
+
+    @JsonProperty("startSkip")
+    private Integer startSkip;
+
+    @JsonProperty("endSkip")
+    private Integer endSkip;
+
+    @JsonProperty("limit")
+    private Integer limit;
+
+    @JsonProperty("createdAt")
+    private LocalDateTime createdAt;
+
+    /**
+     * Clave del rango en los topics de Kafka
+     */
+    public String key() {
+        return runId + ":" + rangeIndex;
+    }
+}
@@ -0,0 +1,46 @@
+package com.challenge.telus.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de evaluar las reglas de validación sobre un usuario
+ * Guarda la máscara de reglas fallidas junto con los mensajes del plan que la calculó, así
+ * una recarga del schema entre la evaluación y el armado de los errores no cambia los mensajes
+ */
+public class RuleEvaluation {
+
+    private final long failedRules;
+    private final String[] ruleMessages;
+
+    public RuleEvaluation(long failedRules, String[] ruleMessages) {
+        this.failedRules = failedRules;
+        this.ruleMessages = ruleMessages;
+    }
+
+    public boolean isValid() {
+        return failedRules == 0;
+    }
+
+    /**
+     * Máscara de reglas fallidas (0 si es válido)
+     */
+    public long getFailedRules() {
+        return failedRules;
+    }
+
+    /**
+     * Mensajes de error de las reglas fallidas, en el orden de las propiedades del schema
+     */
+    public List<String> getErrors() {
+        return messages(ruleMessages, failedRules);
+    }
+
+    static List<String> messages(String[] ruleMessages, long failedRules) {
+        List<String> errors = new ArrayList<>(Long.bitCount(failedRules));
+        for (long rules = failedRules; rules != 0; rules &= rules - 1) {
+            errors.add(ruleMessages[Long.numberOfTrailingZeros(rules)]);
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,67 @@
+package com.challenge.telus.models;
+
+import java.util.List;
+
+/**
+ * Resultado de validar un bloque de usuarios
+ * Guarda el bitset de filas válidas y la máscara de reglas fallidas de cada fila en arreglos
+ * primitivos; los mensajes de error se arman aparte, solo para las filas inválidas, con los
+ * mensajes del mismo plan que evaluó el bloque
+ */
+public class ValidationBatchResult {
+
+    private final long[] validRows;
+    private final long[] failedRules;
+    private final String[] ruleMessages;
+    private final int size;
+    private final int validCount;
+
+    public ValidationBatchResult(long[] failedRules, int size, String[] ruleMessages) {
+        this.failedRules = failedRules;
+        this.ruleMessages = ruleMessages;
+        this.size = size;
+        this.validRows = new long[(size + Long.SIZE - 1) / Long.SIZE];
+
+        int valid = 0;
+        for (int row = 0; row < size; row++) {
+            if (failedRules[row] == 0) {
+                validRows[row >>> 6] |= 1L << row;
+                valid++;
+            }
+        }
+        this.validCount = valid;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getValidCount() {
+        return validCount;
+    }
+
+    /**
+     * Verifica si todas las filas del bloque son válidas
+     */
+    public boolean isAllValid() {
+        return validCount == size;
+    }
+
+    public boolean isValid(int row) {
+        return (validRows[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Máscara de reglas fallidas de la fila (0 si es válida)
+     */
+    public long getFailedRules(int row) {
+        return failedRules[row];
+    }
+
+    /**
+     * Mensajes de error de la fila, en el orden de las propiedades del schema
+     */
+    public List<String> getErrors(int row) {
+        return RuleEvaluation.messages(ruleMessages, failedRules[row]);
+    }
+}
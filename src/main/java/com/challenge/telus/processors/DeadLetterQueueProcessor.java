@@ -3,6 +3,10 @@ package com.challenge.telus.processors;
 import com.challenge.telus.models.InvalidUser;
 import com.challenge.telus.models.User;
 import com.challenge.telus.models.ValidationResult;
+import com.challenge.telus.services.OutputWriterManager;
+import com.challenge.telus.utils.CompressionUtil;
+import com.challenge.telus.utils.JsonlOutputFiles;
+import com.challenge.telus.utils.RecordCounters;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
@@ -11,8 +15,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -20,21 +24,30 @@ import java.util.List;
 /**
  * Procesador para manejar usuarios inválidos
  * Los guarda en el Dead Letter Queue (DLQ) con información de error
+ * Los archivos DLQ se escriben con la compresión configurada para la transformación
  */
 @Slf4j
 @Component
 public class DeadLetterQueueProcessor implements Processor {
 
     private final ObjectMapper objectMapper;
+    private final OutputWriterManager writerManager;
     private final String dlqDirectory;
     private final String dlqFilenamePattern;
+    private final String compression;
 
     public DeadLetterQueueProcessor(
+            ObjectMapper objectMapper,
+            OutputWriterManager writerManager,
             @Value("${extractor.output.directory:raw_users}") String baseDirectory,
-            @Value("${extractor.output.filename-pattern:records_{date:yyyyMMdd_HHmmss}.jsonl}") String filenamePattern) {
-        this.objectMapper = new ObjectMapper();
+            @Value("${extractor.output.filename-pattern:records_{date:yyyyMMdd_HHmmss}.jsonl}") String filenamePattern,
+            @Value("${transformation.output.compression:none}") String compression) {
+        // ObjectMapper principal: InvalidUser incluye un LocalDateTime (errorTimestamp)
+        this.objectMapper = objectMapper;
+        this.writerManager = writerManager;
         this.dlqDirectory = baseDirectory + "/dlq";
         this.dlqFilenamePattern = filenamePattern.replace("records_", "invalid_users_");
+        this.compression = CompressionUtil.normalize(compression);
 
         // Crear directorio DLQ si no existe
         createDlqDirectoryIfNotExists();
@@ -49,6 +62,14 @@ public class DeadLetterQueueProcessor implements Processor {
             return;
         }
 
+        saveInvalid(exchange, validationResult);
+    }
+
+    /**
+     * Guarda un usuario inválido en el DLQ del archivo en proceso y actualiza los contadores
+     * (usado también por el pipeline fusionado, con el exchange del lote)
+     */
+    public void saveInvalid(Exchange exchange, ValidationResult validationResult) throws IOException {
         User user = validationResult.getUser();
         List<String> errors = validationResult.getErrors();
 
@@ -60,7 +81,11 @@ public class DeadLetterQueueProcessor implements Processor {
 
         // Guardar en DLQ usando la ruta configurada en el exchange
         String dlqFilePath = exchange.getProperty("dlqFilePath", String.class);
-        if (dlqFilePath != null) {
+        JsonlOutputFiles outputFiles = exchange.getProperty("jsonlOutputFiles", JsonlOutputFiles.class);
+        if (dlqFilePath != null && outputFiles != null) {
+            outputFiles.writeLine(dlqFilePath, objectMapper.writeValueAsBytes(invalidUser),
+                    exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class));
+        } else if (dlqFilePath != null) {
             saveToDeadLetterQueue(invalidUser, dlqFilePath);
         } else {
             saveToDeadLetterQueue(invalidUser);
@@ -81,11 +106,7 @@ public class DeadLetterQueueProcessor implements Processor {
 
         log.debug("Guardando usuario inválido en DLQ: {}", dlqFile.getAbsolutePath());
 
-        try (FileWriter writer = new FileWriter(dlqFile, true)) { // true para append
-            String jsonLine = objectMapper.writeValueAsString(invalidUser);
-            writer.write(jsonLine + "\n");
-            writer.flush();
-        }
+        appendLine(dlqFile, invalidUser);
 
         log.debug("Usuario inválido guardado exitosamente en DLQ");
     }
@@ -103,27 +124,28 @@ public class DeadLetterQueueProcessor implements Processor {
         
         log.debug("Guardando usuario inválido en DLQ: {}", dlqFile.getAbsolutePath());
 
-        try (FileWriter writer = new FileWriter(dlqFile, true)) { // true para append
-            String jsonLine = objectMapper.writeValueAsString(invalidUser);
-            writer.write(jsonLine + "\n");
-            writer.flush();
-        }
+        appendLine(dlqFile, invalidUser);
 
         log.debug("Usuario inválido guardado exitosamente en DLQ");
     }
 
+    /**
+     * Agrega un usuario inválido como línea JSONL (en gzip, como un miembro nuevo)
+     */
+    private void appendLine(File dlqFile, InvalidUser invalidUser) throws IOException {
+        try (OutputStream out = CompressionUtil.openForAppend(dlqFile, compression)) {
+            out.write(objectMapper.writeValueAsBytes(invalidUser));
+            out.write('\n');
+        }
+    }
+
     /**
      * Incrementa el contador de registros inválidos en el exchange
      */
     private void incrementInvalidRecords(Exchange exchange) {
-        Integer invalidRecords = exchange.getProperty("invalidRecords", Integer.class);
-        if (invalidRecords != null) {
-            exchange.setProperty("invalidRecords", invalidRecords + 1);
-        }
-        
-        Integer totalRecords = exchange.getProperty("totalRecords", Integer.class);
-        if (totalRecords != null) {
-            exchange.setProperty("totalRecords", totalRecords + 1);
+        RecordCounters counters = exchange.getProperty("recordCounters", RecordCounters.class);
+        if (counters != null) {
+            counters.incrementInvalid();
         }
     }
 
@@ -132,7 +154,7 @@ public class DeadLetterQueueProcessor implements Processor {
      */
     private String generateDlqFilename() {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        return dlqFilenamePattern.replace("{date:yyyyMMdd_HHmmss}", timestamp);
+        return dlqFilenamePattern.replace("{date:yyyyMMdd_HHmmss}", timestamp) + CompressionUtil.extension(compression);
     }
 
     /**
@@ -153,17 +175,24 @@ public class DeadLetterQueueProcessor implements Processor {
 
     /**
      * Procesa múltiples usuarios inválidos de una vez
+     * Todo el lote se escribe en un único archivo DLQ con un solo writer y un solo fsync al final
      */
     public void processBatch(List<ValidationResult> validationResults) {
-        for (ValidationResult result : validationResults) {
-            if (result != null && result.isInvalid()) {
-                try {
-                    InvalidUser invalidUser = InvalidUser.fromValidationResult(result);
-                    saveToDeadLetterQueue(invalidUser);
-                } catch (Exception e) {
-                    log.error("Error al procesar usuario inválido en batch", e);
+        String dlqFilePath = new File(dlqDirectory, generateDlqFilename()).getPath();
+        JsonlOutputFiles outputFiles = new JsonlOutputFiles(writerManager);
+        try {
+            for (ValidationResult result : validationResults) {
+                if (result != null && result.isInvalid()) {
+                    try {
+                        InvalidUser invalidUser = InvalidUser.fromValidationResult(result);
+                        outputFiles.writeLine(dlqFilePath, objectMapper.writeValueAsBytes(invalidUser));
+                    } catch (Exception e) {
+                        log.error("Error al procesar usuario inválido en batch", e);
+                    }
                 }
             }
+        } finally {
+            outputFiles.closeAll();
         }
     }
 }
\ No newline at end of file
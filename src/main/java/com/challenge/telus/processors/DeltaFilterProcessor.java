@@ -0,0 +1,169 @@
+package com.challenge.telus.processors;
+
+import com.challenge.telus.models.ApiResponse;
+import com.challenge.telus.models.User;
+import com.challenge.telus.services.UserFingerprintIndex;
+import com.challenge.telus.utils.PageFingerprints;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Procesador de extracción delta
+ * Recibe la página (ApiResponse) y deja en el body solo los usuarios nuevos o modificados
+ * según el índice de huellas, listos para JsonlWriterProcessor. Las huellas de la página
+ * quedan en la propiedad "pendingFingerprints" y se registran en el índice después del
+ * checkpoint, para que una página reanudada no descarte usuarios que nunca se confirmaron.
+ * Con el modo deshabilitado deja la página completa.
+ */
+@Slf4j
+@Component
+public class DeltaFilterProcessor implements Processor {
+
+    private final UserFingerprintIndex fingerprintIndex;
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final boolean enabled;
+    private final Counter skippedCounter;
+
+    public DeltaFilterProcessor(
+            UserFingerprintIndex fingerprintIndex,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${extractor.delta.enabled:false}") Boolean enabled) {
+        this.fingerprintIndex = fingerprintIndex;
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        this.enabled = enabled;
+        this.skippedCounter = Counter.builder("extractor.delta.skipped")
+                .description("Usuarios sin cambios omitidos por la extracción delta")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        ApiResponse apiResponse = exchange.getIn().getBody(ApiResponse.class);
+        exchange.removeProperty("pendingFingerprints");
+        exchange.setProperty("recordsSkipped", 0);
+
+        if (!enabled) {
+            exchange.getMessage().setBody(apiResponse.getUsers() != null ? apiResponse.getUsers() : apiResponse);
+            return;
+        }
+
+        Map<Long, Long> pageFingerprints = new LinkedHashMap<>();
+        int skipped;
+        if (apiResponse.getUsers() != null) {
+            List<User> changedUsers = filterUsers(apiResponse.getUsers(), pageFingerprints);
+            skipped = apiResponse.getUsers().size() - changedUsers.size();
+            exchange.getMessage().setBody(changedUsers.isEmpty() ? null : changedUsers);
+        } else {
+            ApiResponse changedPage = filterRawUsers(apiResponse, pageFingerprints);
+            skipped = apiResponse.getRawUserCount() - changedPage.getRawUserCount();
+            exchange.getMessage().setBody(changedPage.isEmpty() ? null : changedPage);
+        }
+
+        skippedCounter.increment(skipped);
+        exchange.setProperty("pendingFingerprints", new PageFingerprints(pageFingerprints));
+        exchange.setProperty("recordsSkipped", skipped);
+
+        log.debug("Extracción delta - Skip: {}, Usuarios modificados: {}, Sin cambios: {}",
+                apiResponse.getSkip(), pageFingerprints.size(), skipped);
+    }
+
+    /**
+     * Modo binding: la huella se calcula sobre el usuario serializado
+     */
+    private List<User> filterUsers(List<User> users, Map<Long, Long> pageFingerprints) throws IOException {
+        List<User> changedUsers = new ArrayList<>(users.size());
+        for (User user : users) {
+            byte[] json = objectMapper.writeValueAsBytes(user);
+            if (user.getId() == null) {
+                changedUsers.add(user);
+                continue;
+            }
+            long fingerprint = fingerprintIndex.fingerprint(json, 0, json.length);
+            if (fingerprintIndex.isChanged(user.getId(), fingerprint)) {
+                changedUsers.add(user);
+                pageFingerprints.put(user.getId(), fingerprint);
+            }
+        }
+        return changedUsers;
+    }
+
+    /**
+     * Modo streaming: la huella se calcula sobre los bytes de cada línea JSONL ya copiada
+     */
+    private ApiResponse filterRawUsers(ApiResponse apiResponse, Map<Long, Long> pageFingerprints) throws IOException {
+        byte[] raw = apiResponse.getRawUsers();
+        ByteArrayOutputStream changed = new ByteArrayOutputStream(raw.length);
+        int changedCount = 0;
+
+        int lineStart = 0;
+        for (int i = 0; i < raw.length; i++) {
+            if (raw[i] != '\n') {
+                continue;
+            }
+            int length = i - lineStart;
+            if (length > 0) {
+                Long userId = readUserId(raw, lineStart, length);
+                long fingerprint = fingerprintIndex.fingerprint(raw, lineStart, length);
+                if (userId == null || fingerprintIndex.isChanged(userId, fingerprint)) {
+                    changed.write(raw, lineStart, length + 1);
+                    changedCount++;
+                    if (userId != null) {
+                        pageFingerprints.put(userId, fingerprint);
+                    }
+                }
+            }
+            lineStart = i + 1;
+        }
+
+        ApiResponse changedPage = new ApiResponse();
+        changedPage.setTotal(apiResponse.getTotal());
+        changedPage.setSkip(apiResponse.getSkip());
+        changedPage.setLimit(apiResponse.getLimit());
+        changedPage.setRawUsers(changed.toByteArray());
+        changedPage.setRawUserCount(changedCount);
+        return changedPage;
+    }
+
+    /**
+     * Lee el campo "id" de primer nivel de una línea sin materializar el resto del usuario
+     */
+    private Long readUserId(byte[] line, int offset, int length) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(line, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("id".equals(fieldName) && value == JsonToken.VALUE_NUMBER_INT) {
+                    return parser.getLongValue();
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+}
@@ -1,54 +1,51 @@
 package com.challenge.telus.processors;
 
-import com.challenge.telus.models.DepartmentMapping;
 import com.challenge.telus.models.User;
 import com.challenge.telus.models.ValidatedUser;
 import com.challenge.telus.models.ValidationResult;
+import com.challenge.telus.services.DepartmentLookupService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Procesador para enriquecer usuarios con códigos de departamento
- * Lee el CSV de departamentos y mapea nombres a códigos
+ * Los códigos salen de DepartmentLookupService (CSV de departamentos recargable)
+ * En modo passthrough no arma el ValidatedUser: copia los bytes originales de la línea con un
+ * generador streaming, conservando solo los campos de ValidatedUser, y agrega al final
+ * departmentCode e insertionDate
  */
 @Slf4j
 @Component
 public class DepartmentEnrichmentProcessor implements Processor {
 
+    private static final String DEPARTMENT_CODE_FIELD = "departmentCode";
+    private static final String INSERTION_DATE_FIELD = "insertionDate";
+
     private final ObjectMapper objectMapper;
-    private final Resource departmentsCsvResource;
-    private Map<String, String> departmentMappings;
+    private final DepartmentLookupService departmentLookupService;
+    private final Map<String, Map<String, ?>> outputFields;
 
     public DepartmentEnrichmentProcessor(
-            @Value("classpath:data/departments.csv") Resource departmentsCsvResource) {
-        this.objectMapper = new ObjectMapper();
-        this.departmentsCsvResource = departmentsCsvResource;
-        this.departmentMappings = new HashMap<>();
-    }
-
-    @PostConstruct
-    public void loadDepartmentMappings() {
-        try {
-            loadDepartmentsFromCsv();
-            log.info("Cargados {} mapeos de departamentos", departmentMappings.size());
-        } catch (Exception e) {
-            log.error("Error al cargar mapeos de departamentos", e);
-            throw new RuntimeException("No se pudieron cargar los mapeos de departamentos", e);
-        }
+            ObjectMapper objectMapper,
+            DepartmentLookupService departmentLookupService) {
+        this.objectMapper = objectMapper;
+        this.departmentLookupService = departmentLookupService;
+        this.outputFields = outputFieldsOf(ValidatedUser.class);
+        this.outputFields.remove(DEPARTMENT_CODE_FIELD);
+        this.outputFields.remove(INSERTION_DATE_FIELD);
     }
 
     @Override
@@ -72,7 +69,7 @@ public class DepartmentEnrichmentProcessor implements Processor {
     /**
      * Enriquece un usuario con el código de departamento
      */
-    private ValidatedUser enrichUser(User user) {
+    public ValidatedUser enrichUser(User user) {
         ValidatedUser enrichedUser = new ValidatedUser();
 
         // Copiar campos básicos
@@ -92,7 +89,7 @@ public class DepartmentEnrichmentProcessor implements Processor {
 
         // Enriquecer con código de departamento
         String departmentName = user.getCompany().getDepartment();
-        String departmentCode = departmentMappings.getOrDefault(departmentName, "UNK");
+        String departmentCode = departmentLookupService.getDepartmentCode(departmentName);
         enrichedUser.setDepartmentCode(departmentCode);
 
         // Agregar fecha de inserción
@@ -105,46 +102,88 @@ public class DepartmentEnrichmentProcessor implements Processor {
     }
 
     /**
-     * Carga los mapeos de departamentos desde el archivo CSV
+     * Enriquece la línea original sin copiar el usuario a un ValidatedUser
+     * El usuario solo aporta el departamento (puede estar bindeado parcialmente); la salida
+     * conserva el orden de campos de la línea y omite los campos ausentes en vez de escribir null
+     */
+    public byte[] enrichLine(byte[] data, int offset, int length, User user) throws IOException {
+        String departmentName = user.getCompany().getDepartment();
+        String departmentCode = departmentLookupService.getDepartmentCode(departmentName);
+
+        ByteArrayOutputStream enrichedLine = new ByteArrayOutputStream(length + 64);
+        try (JsonParser parser = objectMapper.getFactory().createParser(data, offset, length);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(enrichedLine)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("La línea no es un objeto JSON");
+            }
+            generator.writeStartObject();
+            copyFields(parser, generator, outputFields);
+            generator.writeStringField(DEPARTMENT_CODE_FIELD, departmentCode);
+            generator.writeFieldName(INSERTION_DATE_FIELD);
+            generator.writeObject(LocalDateTime.now());
+            generator.writeEndObject();
+        }
+
+        log.debug("Usuario {} enriquecido (passthrough) - Departamento: {} -> {}",
+                user.getId(), departmentName, departmentCode);
+
+        return enrichedLine.toByteArray();
+    }
+
+    /**
+     * Copia los campos del objeto actual presentes en el árbol de campos; los objetos con
+     * campos conocidos se filtran recursivamente y los demás subárboles se saltan sin decodificar
      */
-    private void loadDepartmentsFromCsv() throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(departmentsCsvResource.getInputStream()))) {
-
-            String line;
-            boolean isFirstLine = true;
-
-            while ((line = reader.readLine()) != null) {
-                // Saltar la primera línea (headers)
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue;
-                }
-
-                String[] parts = line.split(",");
-                if (parts.length >= 2) {
-                    String departmentName = parts[0].trim();
-                    String departmentCode = parts[1].trim();
-                    departmentMappings.put(departmentName, departmentCode);
-
-                    log.debug("Mapeo cargado: {} -> {}", departmentName, departmentCode);
-                }
+    @SuppressWarnings("unchecked")
+    private void copyFields(JsonParser parser, JsonGenerator generator, Map<String, ?> fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!fields.containsKey(fieldName)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            generator.writeFieldName(fieldName);
+            if (value == JsonToken.START_OBJECT && fields.get(fieldName) instanceof Map<?, ?> nested) {
+                generator.writeStartObject();
+                copyFields(parser, generator, (Map<String, ?>) nested);
+                generator.writeEndObject();
+            } else {
+                generator.copyCurrentStructure(parser);
             }
         }
     }
 
+    /**
+     * Árbol de campos serializados de un modelo: cada campo apunta al árbol de su tipo si es
+     * una clase anidada del modelo, o a null si es un valor simple
+     */
+    private Map<String, Map<String, ?>> outputFieldsOf(Class<?> type) {
+        Map<String, Map<String, ?>> fields = new LinkedHashMap<>();
+        for (BeanPropertyDefinition property : objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(type)).findProperties()) {
+            Class<?> propertyType = property.getRawPrimaryType();
+            fields.put(property.getName(), propertyType.getEnclosingClass() != null
+                    && propertyType.getName().startsWith(ValidatedUser.class.getName())
+                    ? outputFieldsOf(propertyType)
+                    : null);
+        }
+        return fields;
+    }
+
     /**
      * Obtiene el código de departamento para un nombre dado
      */
     public String getDepartmentCode(String departmentName) {
-        return departmentMappings.getOrDefault(departmentName, "UNK");
+        return departmentLookupService.getDepartmentCode(departmentName);
     }
 
     /**
      * Verifica si existe un mapeo para un departamento
      */
     public boolean hasDepartmentMapping(String departmentName) {
-        return departmentMappings.containsKey(departmentName);
+        return departmentLookupService.hasDepartmentMapping(departmentName);
     }
 
     /**
@@ -0,0 +1,226 @@
+package com.challenge.telus.processors;
+
+import com.challenge.telus.models.User;
+import com.challenge.telus.models.ValidatedUser;
+import com.challenge.telus.models.ValidationBatchResult;
+import com.challenge.telus.models.ValidationResult;
+import com.challenge.telus.services.ProcessedUserIndex;
+import com.challenge.telus.utils.JsonlOutputFiles;
+import com.challenge.telus.utils.LineBatch;
+import com.challenge.telus.utils.ProcessedUserIds;
+import com.challenge.telus.utils.RecordCounters;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Pipeline fusionado de la transformación: parseo → validación → enriquecimiento → escritura
+ * Procesa un lote de líneas JSONL (el body del split agrupado) sin rutas direct: intermedias
+ * ni un exchange por usuario. Las reglas de cada etapa son las de los procesadores del modo
+ * por rutas, que se invocan directamente.
+ * El lote llega como String (lectura por stream) o como LineBatch (lectura mapeada); en ambos
+ * casos cada línea se parsea desde su rango de bytes. Los usuarios del lote se validan juntos
+ * como un bloque y los mensajes de error se arman solo para las filas que van a la DLQ.
+ * En modo de enriquecimiento passthrough solo se bindean los campos que declara el schema de
+ * validación y la salida se arma empalmando departmentCode e insertionDate en los bytes de la
+ * línea; el usuario completo se bindea únicamente para los registros que van a la DLQ.
+ * Antes de validar se descartan (o se envían a la DLQ, según la política) los usuarios cuyo id
+ * ya fue procesado en otro archivo o ejecución (ProcessedUserIndex).
+ */
+@Slf4j
+@Component
+public class FusedUserPipelineProcessor implements Processor {
+
+    private final ObjectReader userReader;
+    private final ObjectWriter validatedUserWriter;
+    private final UserValidationProcessor userValidationProcessor;
+    private final DepartmentEnrichmentProcessor departmentEnrichmentProcessor;
+    private final DeadLetterQueueProcessor deadLetterQueueProcessor;
+    private final ProcessedUserIndex processedUserIndex;
+    private final ObjectMapper objectMapper;
+    private final boolean passthroughEnrichment;
+    private final boolean dropDuplicates;
+
+    public FusedUserPipelineProcessor(
+            ObjectMapper objectMapper,
+            UserValidationProcessor userValidationProcessor,
+            DepartmentEnrichmentProcessor departmentEnrichmentProcessor,
+            DeadLetterQueueProcessor deadLetterQueueProcessor,
+            ProcessedUserIndex processedUserIndex,
+            @Value("${transformation.enrichment.mode:object}") String enrichmentMode,
+            @Value("${transformation.dedupe.policy:drop}") String duplicatePolicy) {
+        this.objectMapper = objectMapper;
+        this.processedUserIndex = processedUserIndex;
+        this.passthroughEnrichment = "passthrough".equalsIgnoreCase(enrichmentMode);
+        this.dropDuplicates = !"dlq".equalsIgnoreCase(duplicatePolicy);
+        this.userReader = objectMapper.readerFor(User.class);
+        this.validatedUserWriter = objectMapper.writerFor(ValidatedUser.class);
+        this.userValidationProcessor = userValidationProcessor;
+        this.departmentEnrichmentProcessor = departmentEnrichmentProcessor;
+        this.deadLetterQueueProcessor = deadLetterQueueProcessor;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Object body = exchange.getIn().getBody();
+        if (body == null) {
+            return;
+        }
+
+        JsonlOutputFiles outputFiles = exchange.getProperty("jsonlOutputFiles", JsonlOutputFiles.class);
+        String processedFilePath = exchange.getProperty("processedFilePath", String.class);
+        RecordCounters counters = exchange.getProperty("recordCounters", RecordCounters.class);
+        ProcessedUserIds processedIds = exchange.getProperty("processedUserIds", ProcessedUserIds.class);
+        if (outputFiles == null || processedFilePath == null || counters == null || processedIds == null) {
+            throw new IllegalStateException("Archivos de salida no inicializados para el lote");
+        }
+        // En modo ordenado el lote completo se libera con el índice del split
+        Integer sequence = exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class);
+
+        LineBatch batch = body instanceof LineBatch lineBatch
+                ? lineBatch
+                : LineBatch.of(exchange.getIn().getBody(String.class));
+        byte[] data = batch.getData();
+
+        // Parseo: una fila por línea con usuario; lineOfRow recuerda la línea de cada fila
+        User[] users = new User[batch.size()];
+        int[] lineOfRow = new int[batch.size()];
+        int rows = 0;
+        int row = 0;
+        try {
+            for (int line = 0; line < batch.size(); line++) {
+                User user = passthroughEnrichment
+                        ? parseValidationFields(data, batch.start(line), batch.length(line))
+                        : parseUser(data, batch.start(line), batch.length(line));
+                if (user == null) {
+                    continue;
+                }
+                // Dedupe: el id queda reservado hasta que el archivo de entrada termina o el usuario se descarta
+                if (user.getId() != null && !processedUserIndex.claim(user.getId())) {
+                    handleDuplicate(exchange, user, data, batch.start(line), batch.length(line), counters);
+                    continue;
+                }
+                users[rows] = user;
+                lineOfRow[rows] = line;
+                rows++;
+            }
+
+            // Validación del bloque completo
+            ValidationBatchResult validation = userValidationProcessor.validateBatch(users, rows);
+
+            // Enriquecimiento y escritura en el orden de las líneas
+            for (; row < rows; row++) {
+                int line = lineOfRow[row];
+                if (validation.isValid(row)) {
+                    byte[] enrichedLine = passthroughEnrichment
+                            ? departmentEnrichmentProcessor.enrichLine(data, batch.start(line), batch.length(line), users[row])
+                            : validatedUserWriter.writeValueAsBytes(departmentEnrichmentProcessor.enrichUser(users[row]));
+                    outputFiles.writeLine(processedFilePath, enrichedLine, sequence);
+                    counters.incrementValid();
+                    // Se confirma al cerrar los archivos de salida, cuando la línea ya es durable
+                    if (users[row].getId() != null) {
+                        processedIds.add(users[row].getId());
+                    }
+                } else {
+                    // La DLQ guarda el usuario completo: en passthrough se vuelve a bindear la línea entera
+                    releaseId(users[row]);
+                    User invalidUser = passthroughEnrichment ? fullUser(users[row], data, batch.start(line), batch.length(line)) : users[row];
+                    deadLetterQueueProcessor.saveInvalid(exchange,
+                            userValidationProcessor.invalidResult(invalidUser, validation, row));
+                }
+            }
+
+            log.debug("Lote {} procesado en el pipeline fusionado: {} usuarios, {} válidos", sequence, rows,
+                    validation.getValidCount());
+        } finally {
+            // Ante un error se liberan las reservas de las filas que no llegaron a escribirse
+            for (int pending = row; pending < rows; pending++) {
+                releaseId(users[pending]);
+            }
+        }
+    }
+
+    /**
+     * Usuario con id ya procesado: se descarta o va a la DLQ según la política
+     */
+    private void handleDuplicate(Exchange exchange, User user, byte[] data, int offset, int length,
+                                 RecordCounters counters) throws IOException {
+        counters.incrementDuplicate(dropDuplicates);
+        if (dropDuplicates) {
+            log.debug("Usuario {} duplicado, se descarta", user.getId());
+            return;
+        }
+        User duplicateUser = passthroughEnrichment ? fullUser(user, data, offset, length) : user;
+        deadLetterQueueProcessor.saveInvalid(exchange, ValidationResult.invalid(duplicateUser,
+                List.of("Usuario duplicado: el id " + user.getId() + " ya fue procesado")));
+    }
+
+    private void releaseId(User user) {
+        if (user.getId() != null) {
+            processedUserIndex.release(user.getId());
+        }
+    }
+
+    /**
+     * Bindea la línea entera (para la DLQ); si falla se usa el usuario parcial
+     */
+    private User fullUser(User partialUser, byte[] data, int offset, int length) {
+        User fullUser = parseUser(data, offset, length);
+        return fullUser != null ? fullUser : partialUser;
+    }
+
+    /**
+     * Parsea una línea desde su rango de bytes con el parser de arreglos de bytes de Jackson;
+     * las líneas en blanco o con JSON inválido se saltan como en el modo por rutas
+     */
+    private User parseUser(byte[] data, int offset, int length) {
+        if (isBlank(data, offset, length)) {
+            return null;
+        }
+        try {
+            return userReader.readValue(data, offset, length);
+        } catch (IOException e) {
+            log.error("Error al parsear línea JSON: {}", new String(data, offset, length, StandardCharsets.UTF_8), e);
+            return null;
+        }
+    }
+
+    /**
+     * Bindea solo los campos que declara el schema de validación vigente; el resto de la línea
+     * se recorre sin decodificar
+     */
+    private User parseValidationFields(byte[] data, int offset, int length) {
+        if (isBlank(data, offset, length)) {
+            return null;
+        }
+        try (JsonParser parser = new FilteringParserDelegate(
+                objectMapper.getFactory().createParser(data, offset, length),
+                userValidationProcessor.getValidationFieldsFilter(), TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true)) {
+            return userReader.readValue(parser);
+        } catch (IOException e) {
+            log.error("Error al parsear línea JSON: {}", new String(data, offset, length, StandardCharsets.UTF_8), e);
+            return null;
+        }
+    }
+
+    private boolean isBlank(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] != ' ' && data[i] != '\t' && data[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
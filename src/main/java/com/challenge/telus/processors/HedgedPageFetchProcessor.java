@@ -0,0 +1,245 @@
+package com.challenge.telus.processors;
+
+import com.challenge.telus.utils.HedgedAttempt;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Procesador que obtiene una página con requests "hedged"
+ * Envía el request a direct:fetch-page-attempt y, si no respondió dentro del percentil
+ * configurado de la latencia reciente, envía un duplicado y se queda con el primero que
+ * responde correctamente. La cantidad de duplicados está acotada por un presupuesto
+ * (fracción de los requests) para no multiplicar la carga sobre la API.
+ * Los intentos corren en un pool acotado (dos por worker de descarga) y el intento que
+ * pierde la carrera se aborta, devolviendo su slot de concurrencia al rate limiter.
+ */
+@Slf4j
+@Component
+public class HedgedPageFetchProcessor implements Processor {
+
+    private static final String ATTEMPT_ENDPOINT = "direct:fetch-page-attempt";
+
+    private final CamelContext camelContext;
+    private final ProducerTemplate producerTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int poolSize;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private final double budget;
+    private final int minSamples;
+
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyIndex;
+    private double hedgeTokens;
+    private volatile long currentDelayMs;
+    private ExecutorService executor;
+
+    private final Counter requestCounter;
+    private final Counter hedgeCounter;
+    private final Counter hedgeWinCounter;
+
+    public HedgedPageFetchProcessor(
+            CamelContext camelContext,
+            ProducerTemplate producerTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${extractor.hedging.enabled:false}") Boolean enabled,
+            @Value("${extractor.hedging.percentile:0.95}") Double percentile,
+            @Value("${extractor.hedging.min-delay:100}") Long minDelayMs,
+            @Value("${extractor.hedging.max-delay:10000}") Long maxDelayMs,
+            @Value("${extractor.hedging.budget:0.1}") Double budget,
+            @Value("${extractor.hedging.window:200}") Integer window,
+            @Value("${extractor.hedging.min-samples:20}") Integer minSamples,
+            @Value("${extractor.concurrency.workers:4}") Integer concurrencyWorkers) {
+        this.camelContext = camelContext;
+        this.producerTemplate = producerTemplate;
+        this.meterRegistry = meterRegistry;
+        // Cada página en descarga usa a lo sumo dos intentos: el original y el duplicado
+        this.poolSize = 2 * Math.max(1, concurrencyWorkers);
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.budget = budget;
+        this.minSamples = minSamples;
+        this.latencies = new long[Math.max(1, window)];
+        this.currentDelayMs = maxDelayMs;
+
+        this.requestCounter = Counter.builder("extractor.hedging.requests")
+                .description("Páginas obtenidas con la política de hedging")
+                .register(meterRegistry);
+        this.hedgeCounter = Counter.builder("extractor.hedging.hedges")
+                .description("Requests duplicados enviados")
+                .register(meterRegistry);
+        this.hedgeWinCounter = Counter.builder("extractor.hedging.wins")
+                .description("Requests duplicados que respondieron antes que el original")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Crea el pool de intentos y publica los gauges, solo con el hedging habilitado
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        executor = camelContext.getExecutorServiceManager().newFixedThreadPool(this, "PageHedging", poolSize);
+        Gauge.builder("extractor.hedging.rate", this, HedgedPageFetchProcessor::getHedgeRate)
+                .description("Fracción de páginas con request duplicado")
+                .register(meterRegistry);
+        Gauge.builder("extractor.hedging.delay", this, processor -> processor.currentDelayMs)
+                .description("Espera actual antes de duplicar un request (ms)")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        requestCounter.increment();
+        addHedgeBudget();
+
+        HedgedAttempt primaryAttempt = new HedgedAttempt();
+        CompletableFuture<Attempt> primary = sendAttempt(exchange, false, primaryAttempt);
+        Attempt winner;
+
+        long delay = hedgeDelay();
+        try {
+            winner = primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (takeHedgeToken()) {
+                hedgeCounter.increment();
+                log.debug("Página con skip {} sin respuesta en {} ms, enviando request duplicado",
+                        exchange.getIn().getHeader("skip"), delay);
+                HedgedAttempt hedgeAttempt = new HedgedAttempt();
+                winner = firstSuccessful(primary, sendAttempt(exchange, true, hedgeAttempt));
+                // El intento que perdió se aborta: su respuesta se descartaría igual
+                (winner.hedge() ? primaryAttempt : hedgeAttempt).cancel();
+            } else {
+                winner = primary.get();
+            }
+        }
+
+        if (winner.hedge()) {
+            hedgeWinCounter.increment();
+        }
+        if (winner.result().getException() != null) {
+            throw winner.result().getException();
+        }
+
+        exchange.getMessage().setHeaders(winner.result().getMessage().getHeaders());
+        exchange.getMessage().setBody(winner.result().getMessage().getBody());
+    }
+
+    public double getHedgeRate() {
+        double requests = requestCounter.count();
+        return requests > 0 ? hedgeCounter.count() / requests : 0;
+    }
+
+    /**
+     * Envía un intento sobre una copia del exchange y registra su latencia si fue exitoso
+     */
+    private CompletableFuture<Attempt> sendAttempt(Exchange exchange, boolean hedge, HedgedAttempt attempt) {
+        Exchange copy = exchange.copy();
+
+        return CompletableFuture.supplyAsync(() -> {
+            if (!attempt.start()) {
+                copy.setException(new CancellationException("Intento cancelado antes de enviarse"));
+                return new Attempt(copy, hedge);
+            }
+            try {
+                long start = System.currentTimeMillis();
+                Exchange result = producerTemplate.send(ATTEMPT_ENDPOINT, copy);
+                if (result.getException() == null) {
+                    recordLatency(System.currentTimeMillis() - start);
+                }
+                return new Attempt(result, hedge);
+            } finally {
+                attempt.finish();
+            }
+        }, executor);
+    }
+
+    /**
+     * Devuelve el primer intento exitoso; si ambos fallan, el error del original
+     */
+    private Attempt firstSuccessful(CompletableFuture<Attempt> primary, CompletableFuture<Attempt> hedge)
+            throws ExecutionException, InterruptedException {
+        CompletableFuture<Attempt> firstSuccess = new CompletableFuture<>();
+        primary.thenAccept(attempt -> completeIfSuccessful(firstSuccess, attempt));
+        hedge.thenAccept(attempt -> completeIfSuccessful(firstSuccess, attempt));
+        CompletableFuture.allOf(primary, hedge).thenRun(() -> firstSuccess.complete(primary.join()));
+        return firstSuccess.get();
+    }
+
+    private void completeIfSuccessful(CompletableFuture<Attempt> firstSuccess, Attempt attempt) {
+        if (attempt.result().getException() == null) {
+            firstSuccess.complete(attempt);
+        }
+    }
+
+    /**
+     * Espera antes de duplicar: percentil configurado de la latencia reciente, acotado
+     * Hasta juntar suficientes muestras se usa el máximo para no duplicar a ciegas
+     */
+    private synchronized long hedgeDelay() {
+        if (latencyCount == 0 || latencyCount < minSamples) {
+            return maxDelayMs;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        currentDelayMs = Math.max(minDelayMs, Math.min(maxDelayMs, sorted[Math.max(0, index)]));
+        return currentDelayMs;
+    }
+
+    private synchronized void recordLatency(long latencyMs) {
+        latencies[latencyIndex] = latencyMs;
+        latencyIndex = (latencyIndex + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+    }
+
+    /**
+     * Cada página suma una fracción de duplicado al presupuesto, sin acumular más de un duplicado
+     */
+    private synchronized void addHedgeBudget() {
+        hedgeTokens = Math.min(1 + budget, hedgeTokens + budget);
+    }
+
+    private synchronized boolean takeHedgeToken() {
+        if (hedgeTokens >= 1) {
+            hedgeTokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resultado de un intento e indicador de si fue el request duplicado
+     */
+    private record Attempt(Exchange result, boolean hedge) {
+    }
+}
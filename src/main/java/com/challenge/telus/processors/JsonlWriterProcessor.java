@@ -1,83 +1,440 @@
 package com.challenge.telus.processors;
 
+import com.challenge.telus.models.ApiResponse;
+import com.challenge.telus.models.ExtractionState;
 import com.challenge.telus.models.User;
+import com.challenge.telus.utils.CompressionUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Procesador para escribir usuarios en formato JSONL
  * Cada usuario se escribe en una línea separada del archivo
+ * Cada extracción escribe en un único canal abierto durante toda la corrida, dividido en
+ * segmentos que rotan por tamaño o cantidad de registros. Los segmentos se escriben como
+ * .part y se renombran al rotar, así la transformación solo ve archivos completos.
+ * Cada página se escribe en la posición confirmada por el último checkpoint y se fuerza a
+ * disco antes del checkpoint, por lo que al reanudar se descarta lo no confirmado.
+ * Con compresión gzip cada página se agrega como un miembro gzip independiente, lo que
+ * mantiene los offsets confirmados sobre bytes comprimidos
  */
 @Slf4j
 @Component
 public class JsonlWriterProcessor implements Processor {
-    
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final String PART_SUFFIX = ".part";
+    private static final String JSONL_EXTENSION = ".jsonl";
+
     private final ObjectMapper objectMapper;
     private final String outputDirectory;
     private final String filenamePattern;
-    
+    private final long rotationMaxBytes;
+    private final int rotationMaxRecords;
+    private final String compression;
+
+    // ReentrantLock en lugar de synchronized: con virtual threads no fija el carrier durante el I/O
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel segmentChannel;
+    private String openSegment;
+
     public JsonlWriterProcessor(
             @Value("${extractor.output.directory:raw_users}") String outputDirectory,
-            @Value("${extractor.output.filename-pattern:records_{date:yyyyMMdd_HHmmss}.jsonl}") String filenamePattern) {
+            @Value("${extractor.output.filename-pattern:records_{date:yyyyMMdd_HHmmss}.jsonl}") String filenamePattern,
+            @Value("${extractor.output.rotation.max-bytes:67108864}") Long rotationMaxBytes,
+            @Value("${extractor.output.rotation.max-records:0}") Integer rotationMaxRecords,
+            @Value("${extractor.output.compression:none}") String compression) {
         this.objectMapper = new ObjectMapper();
         this.outputDirectory = outputDirectory;
         this.filenamePattern = filenamePattern;
-        
+        this.rotationMaxBytes = rotationMaxBytes;
+        this.rotationMaxRecords = rotationMaxRecords;
+        this.compression = CompressionUtil.normalize(compression);
+
         // Crear directorio de salida si no existe
         createOutputDirectoryIfNotExists();
     }
-    
+
     @Override
     public void process(Exchange exchange) throws Exception {
+        if (exchange.getIn().getBody() instanceof ApiResponse apiResponse) {
+            writeRawUsers(exchange, apiResponse);
+            return;
+        }
+
         List<User> users = exchange.getIn().getBody(List.class);
-        
+
         if (users == null || users.isEmpty()) {
             log.warn("No hay usuarios para escribir en JSONL");
             return;
         }
-        
-        String filename = generateFilename();
-        File outputFile = new File(outputDirectory, filename);
-        
-        log.info("Escribiendo {} usuarios en archivo: {}", users.size(), outputFile.getAbsolutePath());
-        
-        try (FileWriter writer = new FileWriter(outputFile, true)) { // true para append
-            for (User user : users) {
-                String jsonLine = objectMapper.writeValueAsString(user);
-                writer.write(jsonLine + "\n");
+
+        writePage(exchange, serializeUsers(users), users.size());
+    }
+
+    /**
+     * Convierte una página en bytes JSONL: los usuarios ya copiados en modo streaming o la
+     * lista de User serializada en modo binding
+     */
+    public byte[] renderPage(ApiResponse apiResponse) throws IOException {
+        if (apiResponse.getUsers() != null) {
+            return serializeUsers(apiResponse.getUsers());
+        }
+        return apiResponse.getRawUsers() != null ? apiResponse.getRawUsers() : new byte[0];
+    }
+
+    /**
+     * Escribe el archivo de un rango de la extracción distribuida
+     * Se escribe como .part (reemplazando el de un intento anterior del mismo rango), se fuerza
+     * a disco y se publica con un rename atómico, igual que los segmentos de una corrida local
+     * @return ruta absoluta del archivo publicado
+     */
+    public String writeRangeFile(String runId, int rangeIndex, List<byte[]> pages) {
+        String fileName = String.format("%s_range_%04d%s%s", rangeBaseName(runId), rangeIndex + 1, JSONL_EXTENSION,
+                CompressionUtil.extension(compression));
+        Path partPath = partPath(fileName);
+        Path finalPath = finalPath(fileName);
+
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (byte[] jsonl : pages) {
+                ByteBuffer buffer = ByteBuffer.wrap(CompressionUtil.compress(jsonl, compression));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
             }
-            writer.flush();
+            channel.force(true);
         } catch (IOException e) {
-            log.error("Error al escribir archivo JSONL: {}", filename, e);
-            throw new RuntimeException("Error al escribir archivo JSONL", e);
+            log.error("Error al escribir el archivo del rango: {}", fileName, e);
+            throw new RuntimeException("Error al escribir el archivo del rango", e);
+        }
+
+        try {
+            Files.move(partPath, finalPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Error al publicar el archivo del rango: {}", fileName, e);
+            throw new RuntimeException("Error al publicar el archivo del rango", e);
+        }
+
+        log.info("Rango publicado: {}", fileName);
+        return finalPath.toAbsolutePath().toString();
+    }
+
+    private byte[] serializeUsers(List<User> users) throws IOException {
+        ByteArrayOutputStream page = new ByteArrayOutputStream(8192);
+        for (User user : users) {
+            page.write(objectMapper.writeValueAsBytes(user));
+            page.write('\n');
+        }
+        return page.toByteArray();
+    }
+
+    /**
+     * Cierra el último segmento de una extracción completada y publica el manifiesto final
+     * Es idempotente: si el segmento ya fue renombrado solo reescribe el manifiesto
+     */
+    public void finishRun(ExtractionState state) {
+        lock.lock();
+        try {
+            if (state.getOutputFile() == null) {
+                return;
+            }
+
+            try {
+                Path partPath = partPath(state.getOutputFile());
+                if (Files.exists(partPath)) {
+                    closeSegmentChannel();
+                    if (Files.size(partPath) == 0) {
+                        Files.delete(partPath);
+                    } else {
+                        publishSegment(state);
+                    }
+                } else if (Files.exists(finalPath(state.getOutputFile()))) {
+                    markSegmentCompleted(state);
+                }
+
+                writeManifest(state, true);
+                log.info("Extracción finalizada en {} segmentos: {}", state.getCompletedSegments().size(),
+                        state.getCompletedSegments());
+            } catch (IOException e) {
+                log.error("Error al cerrar los segmentos de la extracción", e);
+                throw new RuntimeException("Error al cerrar los segmentos de la extracción", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Escribe los usuarios ya copiados como JSONL en modo streaming, sin re-serializarlos
+     */
+    private void writeRawUsers(Exchange exchange, ApiResponse apiResponse) {
+        if (apiResponse.getRawUsers() == null || apiResponse.getRawUserCount() == 0) {
+            log.warn("No hay usuarios para escribir en JSONL");
+            return;
+        }
+
+        writePage(exchange, apiResponse.getRawUsers(), apiResponse.getRawUserCount());
+    }
+
+    /**
+     * Escribe una página en el segmento en curso y registra el nuevo offset en el estado
+     * El offset se persiste cuando la ruta guarda el checkpoint de la página
+     */
+    private void writePage(Exchange exchange, byte[] jsonl, int records) {
+        lock.lock();
+        try {
+            ExtractionState state = exchange.getProperty("extractionState", ExtractionState.class);
+            if (state == null) {
+                log.error("No hay estado de extracción asociado, no se puede escribir el JSONL");
+                throw new IllegalStateException("No hay estado de extracción para escribir el JSONL");
+            }
+
+            byte[] page;
+            try {
+                page = CompressionUtil.compress(jsonl, compression);
+                FileChannel channel = openSegment(state);
+                if (shouldRotate(state)) {
+                    rotateSegment(state);
+                    channel = openSegment(state);
+                }
+
+                long position = state.getOutputBytes();
+                ByteBuffer buffer = ByteBuffer.wrap(page);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                // Los datos deben estar en disco antes de que el checkpoint los dé por confirmados
+                channel.force(false);
+
+                state.setOutputBytes(position);
+                state.setOutputSegmentRecords(state.getOutputSegmentRecords() + records);
+            } catch (IOException e) {
+                log.error("Error al escribir archivo JSONL: {}", state.getOutputFile(), e);
+                throw new RuntimeException("Error al escribir archivo JSONL", e);
+            }
+
+            log.info("Escritos {} usuarios ({} bytes, {} en disco) en segmento {}", records, jsonl.length, page.length,
+                    state.getOutputFile());
+
+            // Guardar información del archivo en el exchange para uso posterior
+            exchange.setProperty("outputFile", finalPath(state.getOutputFile()).toAbsolutePath().toString());
+            exchange.setProperty("recordsWritten", records);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve el canal del segmento en curso, abriéndolo (o reabriéndolo al reanudar) si hace falta
+     */
+    private FileChannel openSegment(ExtractionState state) throws IOException {
+        if (state.getOutputFile() == null) {
+            startRun(state);
+        }
+        if (segmentChannel != null && state.getOutputFile().equals(openSegment)) {
+            return segmentChannel;
+        }
+
+        closeSegmentChannel();
+
+        if (!Files.exists(partPath(state.getOutputFile())) && Files.exists(finalPath(state.getOutputFile()))) {
+            // El segmento se publicó pero el corte ocurrió antes del checkpoint de la rotación
+            log.warn("Segmento {} ya publicado, se continúa en el siguiente", state.getOutputFile());
+            markSegmentCompleted(state);
+            nextSegment(state);
+        }
+
+        segmentChannel = FileChannel.open(partPath(state.getOutputFile()),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        openSegment = state.getOutputFile();
+        alignWithCheckpoint(segmentChannel, state);
+
+        log.info("Segmento JSONL abierto: {} (offset {})", state.getOutputFile(), state.getOutputBytes());
+        return segmentChannel;
+    }
+
+    /**
+     * Ajusta el segmento al offset confirmado en el estado
+     * Si tiene bytes de una página no confirmada (corte entre escritura y checkpoint),
+     * se truncan para que la página se vuelva a escribir una sola vez
+     */
+    private void alignWithCheckpoint(FileChannel channel, ExtractionState state) throws IOException {
+        long size = channel.size();
+        long committed = state.getOutputBytes();
+
+        if (size > committed) {
+            log.warn("Descartando {} bytes no confirmados de {} (offset confirmado: {})",
+                    size - committed, state.getOutputFile(), committed);
+            channel.truncate(committed);
+        } else if (size < committed) {
+            log.error("El segmento {} tiene {} bytes pero el checkpoint confirma {}, se continúa al final",
+                    state.getOutputFile(), size, committed);
+            state.setOutputBytes(size);
+        }
+    }
+
+    private boolean shouldRotate(ExtractionState state) {
+        if (state.getOutputBytes() == 0) {
+            return false;
+        }
+        return (rotationMaxBytes > 0 && state.getOutputBytes() >= rotationMaxBytes)
+                || (rotationMaxRecords > 0 && state.getOutputSegmentRecords() >= rotationMaxRecords);
+    }
+
+    /**
+     * Publica el segmento en curso y pasa al siguiente
+     */
+    private void rotateSegment(ExtractionState state) throws IOException {
+        log.info("Rotando segmento {} ({} bytes, {} registros)", state.getOutputFile(),
+                state.getOutputBytes(), state.getOutputSegmentRecords());
+        closeSegmentChannel();
+        publishSegment(state);
+        writeManifest(state, false);
+        nextSegment(state);
+    }
+
+    /**
+     * Renombra el .part del segmento a su nombre final de forma atómica
+     * Solo contiene bytes confirmados, porque la rotación ocurre entre páginas
+     */
+    private void publishSegment(ExtractionState state) throws IOException {
+        Path partPath = partPath(state.getOutputFile());
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.WRITE)) {
+            if (channel.size() > state.getOutputBytes()) {
+                channel.truncate(state.getOutputBytes());
+            }
+            channel.force(true);
+        }
+        Files.move(partPath, finalPath(state.getOutputFile()), StandardCopyOption.ATOMIC_MOVE);
+        markSegmentCompleted(state);
+        log.info("Segmento publicado: {}", state.getOutputFile());
+    }
+
+    /**
+     * Inicializa los segmentos de una nueva extracción
+     */
+    private void startRun(ExtractionState state) {
+        state.setOutputSegment(0);
+        state.setCompletedSegments(new ArrayList<>());
+        nextSegment(state);
+    }
+
+    private void nextSegment(ExtractionState state) {
+        int segment = state.getOutputSegment() + 1;
+        state.setOutputSegment(segment);
+        state.setOutputFile(String.format("%s_%04d%s%s", runBaseName(state), segment, JSONL_EXTENSION,
+                CompressionUtil.extension(compression)));
+        state.setOutputBytes(0L);
+        state.setOutputSegmentRecords(0);
+    }
+
+    private void markSegmentCompleted(ExtractionState state) {
+        if (state.getCompletedSegments() == null) {
+            state.setCompletedSegments(new ArrayList<>());
         }
-        
-        log.info("Archivo JSONL actualizado exitosamente: {}", filename);
-        
-        // Guardar información del archivo en el exchange para uso posterior
-        exchange.setProperty("outputFile", outputFile.getAbsolutePath());
-        exchange.setProperty("recordsWritten", users.size());
+        if (!state.getCompletedSegments().contains(state.getOutputFile())) {
+            state.getCompletedSegments().add(state.getOutputFile());
+        }
+    }
+
+    /**
+     * Escribe el manifiesto de segmentos publicados de la corrida (temporal + rename atómico)
+     */
+    private void writeManifest(ExtractionState state, boolean completed) throws IOException {
+        ObjectNode manifest = objectMapper.createObjectNode();
+        manifest.put("run", runBaseName(state));
+        manifest.put("completed", completed);
+        manifest.put("compression", compression);
+        manifest.put("updatedAt", LocalDateTime.now().toString());
+
+        ArrayNode segments = manifest.putArray("segments");
+        for (String segment : state.getCompletedSegments()) {
+            Path segmentPath = finalPath(segment);
+            segments.addObject()
+                    .put("file", segment)
+                    .put("bytes", Files.exists(segmentPath) ? Files.size(segmentPath) : 0);
+        }
+
+        Path manifestPath = Paths.get(outputDirectory, runBaseName(state) + ".manifest.json");
+        Path tempPath = Paths.get(outputDirectory, runBaseName(state) + ".manifest.json.tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tempPath.toFile(), manifest);
+        Files.move(tempPath, manifestPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Nombre base de la corrida, derivado del patrón configurado y del inicio de la extracción
+     */
+    private String runBaseName(ExtractionState state) {
+        LocalDateTime start = state.getStartTime() != null ? state.getStartTime() : LocalDateTime.now();
+        String filename = filenamePattern.replace("{date:yyyyMMdd_HHmmss}", start.format(TIMESTAMP_FORMAT));
+        return filename.endsWith(JSONL_EXTENSION)
+                ? filename.substring(0, filename.length() - JSONL_EXTENSION.length())
+                : filename;
     }
-    
+
     /**
-     * Genera el nombre del archivo basado en el patrón configurado
+     * Nombre base de los rangos de una corrida distribuida (el ID de la corrida ocupa el lugar de la fecha)
      */
-    private String generateFilename() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        return filenamePattern.replace("{date:yyyyMMdd_HHmmss}", timestamp);
+    private String rangeBaseName(String runId) {
+        String filename = filenamePattern.replace("{date:yyyyMMdd_HHmmss}", runId);
+        return filename.endsWith(JSONL_EXTENSION)
+                ? filename.substring(0, filename.length() - JSONL_EXTENSION.length())
+                : filename;
+    }
+
+    private Path finalPath(String segment) {
+        return Paths.get(outputDirectory, segment);
+    }
+
+    private Path partPath(String segment) {
+        return Paths.get(outputDirectory, segment + PART_SUFFIX);
     }
-    
+
+    @PreDestroy
+    public void closeSegmentChannel() {
+        lock.lock();
+        try {
+            if (segmentChannel == null) {
+                return;
+            }
+            try {
+                segmentChannel.force(true);
+                segmentChannel.close();
+            } catch (IOException e) {
+                log.error("Error al cerrar el segmento {}", openSegment, e);
+            } finally {
+                segmentChannel = null;
+                openSegment = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Crea el directorio de salida si no existe
      */
@@ -94,4 +451,3 @@ public class JsonlWriterProcessor implements Processor {
         }
     }
 }
-
@@ -2,11 +2,11 @@ package com.challenge.telus.processors;
 
 import com.challenge.telus.models.ApiResponse;
 import com.challenge.telus.models.ExtractionState;
+import com.challenge.telus.services.AdaptivePageSizer;
 import com.challenge.telus.services.ExtractionStateService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -18,13 +18,13 @@ import org.springframework.stereotype.Component;
 public class PaginationProcessor implements Processor {
     
     private final ExtractionStateService stateService;
-    private final Integer limit;
+    private final AdaptivePageSizer pageSizer;
     
     public PaginationProcessor(
             ExtractionStateService stateService,
-            @Value("${api.users.limit:100}") Integer limit) {
+            AdaptivePageSizer pageSizer) {
         this.stateService = stateService;
-        this.limit = limit;
+        this.pageSizer = pageSizer;
     }
     
     @Override
@@ -40,7 +40,7 @@ public class PaginationProcessor implements Processor {
         
         log.info("Procesando página - Skip: {}, Limit: {}, Total: {}, Usuarios: {}", 
                 apiResponse.getSkip(), apiResponse.getLimit(), apiResponse.getTotal(), 
-                apiResponse.getUsers() != null ? apiResponse.getUsers().size() : 0);
+                apiResponse.getUserCount());
         
         // Actualizar el estado con la información de la API
         updateStateFromApiResponse(currentState, apiResponse);
@@ -73,10 +73,13 @@ public class PaginationProcessor implements Processor {
         }
         
         // Actualizar el progreso
-        int recordsInThisPage = apiResponse.getUsers() != null ? apiResponse.getUsers().size() : 0;
+        int recordsInThisPage = apiResponse.getUserCount();
         int newRecordsProcessed = state.getRecordsProcessed() + recordsInThisPage;
         
-        state.updateProgress(apiResponse.getSkip(), newRecordsProcessed);
+        // El tamaño real de la página permite reanudar aunque el limit haya variado
+        Integer pageLimit = apiResponse.getLimit() != null ? apiResponse.getLimit() : recordsInThisPage;
+        state.updateProgress(apiResponse.getSkip(), newRecordsProcessed, pageLimit);
+        state.setLimit(pageSizer.currentLimit());
         
         log.debug("Estado actualizado - Skip: {}, Procesados: {}/{}", 
                 state.getLastSuccessfulSkip(), state.getRecordsProcessed(), state.getTotalRecords());
@@ -113,6 +116,7 @@ public class PaginationProcessor implements Processor {
      */
     private void prepareNextPage(Exchange exchange, ExtractionState state) {
         Integer nextSkip = state.getNextSkip();
+        int limit = pageSizer.currentLimit();
         
         // Configurar los headers para la siguiente llamada HTTP
         exchange.getMessage().setHeader("skip", nextSkip);
@@ -0,0 +1,138 @@
+package com.challenge.telus.processors;
+
+import com.challenge.telus.models.ApiResponse;
+import com.challenge.telus.services.UserFieldProjection;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Procesador que parsea una página de la API en modo streaming
+ * Lee el body HTTP token a token y copia cada elemento de "users" como una línea JSONL,
+ * sin construir objetos User; de la página solo se leen total, skip y limit
+ * Con la proyección habilitada, los campos de usuario no proyectados se saltan sin copiarse
+ */
+@Slf4j
+@Component
+public class StreamingPageProcessor implements Processor {
+
+    private static final SerializedString LINE_SEPARATOR = new SerializedString("\n");
+
+    private final JsonFactory jsonFactory;
+    private final UserFieldProjection projection;
+
+    public StreamingPageProcessor(ObjectMapper objectMapper, UserFieldProjection projection) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.projection = projection;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        InputStream body = exchange.getIn().getBody(InputStream.class);
+
+        if (body == null) {
+            log.warn("Body HTTP vacío, no se puede parsear la página");
+            exchange.getMessage().setBody(null);
+            return;
+        }
+
+        ApiResponse apiResponse = parsePage(body);
+        exchange.getMessage().setBody(apiResponse);
+
+        log.debug("Página parseada en modo streaming - Skip: {}, Usuarios: {}, Bytes: {}",
+                apiResponse.getSkip(), apiResponse.getRawUserCount(),
+                apiResponse.getRawUsers() != null ? apiResponse.getRawUsers().length : 0);
+    }
+
+    /**
+     * Recorre el objeto raíz de la respuesta copiando el arreglo de usuarios
+     */
+    private ApiResponse parsePage(InputStream body) throws IOException {
+        ApiResponse apiResponse = new ApiResponse();
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("La respuesta de la API no es un objeto JSON");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                switch (fieldName) {
+                    case "users" -> copyUsers(parser, value, apiResponse);
+                    case "total" -> apiResponse.setTotal(parser.getIntValue());
+                    case "skip" -> apiResponse.setSkip(parser.getIntValue());
+                    case "limit" -> apiResponse.setLimit(parser.getIntValue());
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        return apiResponse;
+    }
+
+    /**
+     * Copia cada elemento del arreglo "users" como una línea JSONL terminada en '\n'
+     */
+    private void copyUsers(JsonParser parser, JsonToken value, ApiResponse apiResponse) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        ByteArrayOutputStream usersJsonl = new ByteArrayOutputStream(8192);
+        int count = 0;
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(usersJsonl)) {
+            // Las líneas quedan separadas por el separador de valores raíz del generador
+            generator.setRootValueSeparator(LINE_SEPARATOR);
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                copyUser(parser, generator);
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            usersJsonl.write('\n');
+        }
+
+        apiResponse.setRawUsers(usersJsonl.toByteArray());
+        apiResponse.setRawUserCount(count);
+    }
+
+    /**
+     * Copia un usuario conservando solo los campos de primer nivel proyectados
+     * Los demás subárboles se saltan con skipChildren, sin decodificar sus valores
+     */
+    private void copyUser(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (!projection.isEnabled() || parser.currentToken() != JsonToken.START_OBJECT) {
+            generator.copyCurrentStructure(parser);
+            return;
+        }
+
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if (projection.includes(fieldName)) {
+                generator.writeFieldName(fieldName);
+                generator.copyCurrentStructure(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        generator.writeEndObject();
+    }
+}
@@ -1,36 +1,38 @@
 package com.challenge.telus.processors;
 
+import com.challenge.telus.models.RuleEvaluation;
 import com.challenge.telus.models.User;
+import com.challenge.telus.models.ValidationBatchResult;
 import com.challenge.telus.models.ValidationResult;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.challenge.telus.services.UserValidationEngine;
+import com.fasterxml.jackson.core.filter.TokenFilter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Procesador para validar usuarios contra el esquema JSON
- * Valida campos requeridos y formatos
+ * Valida campos requeridos y formatos con el plan compilado del schema (UserValidationEngine)
  */
 @Slf4j
 @Component
 public class UserValidationProcessor implements Processor {
 
-    private final ObjectMapper objectMapper;
-    private final Resource schemaResource;
+    private final UserValidationEngine validationEngine;
 
-    public UserValidationProcessor(
-            @Value("classpath:schemas/user-validation-schema.json") Resource schemaResource) {
-        this.objectMapper = new ObjectMapper();
-        this.schemaResource = schemaResource;
+    public UserValidationProcessor(UserValidationEngine validationEngine) {
+        this.validationEngine = validationEngine;
+    }
+
+    /**
+     * Filtro de tokens con los campos que declara el schema (anidados incluidos)
+     * Permite bindear solo lo que la validación necesita y saltar el resto de la línea
+     */
+    public TokenFilter getValidationFieldsFilter() {
+        return validationEngine.getFieldsFilter();
     }
 
     @Override
@@ -45,62 +47,41 @@ public class UserValidationProcessor implements Processor {
 
         log.debug("Validando usuario: {}", user.getId());
 
-        List<String> errors = validateUser(user);
-
-        if (errors.isEmpty()) {
-            log.debug("Usuario {} válido", user.getId());
-            exchange.getMessage().setBody(ValidationResult.valid(user));
-        } else {
-            log.warn("Usuario {} inválido: {}", user.getId(), errors);
-            exchange.getMessage().setBody(ValidationResult.invalid(user, errors));
-        }
+        exchange.getMessage().setBody(validate(user));
     }
 
     /**
-     * Valida un usuario contra las reglas de negocio
+     * Valida un usuario y arma el resultado (usado también por el pipeline fusionado)
+     * Los mensajes de error solo se generan si alguna regla falló
      */
-    private List<String> validateUser(User user) {
-        List<String> errors = new ArrayList<>();
+    public ValidationResult validate(User user) {
+        RuleEvaluation evaluation = validationEngine.evaluate(user);
 
-        // Validar ID
-        if (user.getId() == null || user.getId() <= 0) {
-            errors.add("ID debe ser un entero positivo");
-        }
-
-        // Validar firstName
-        if (user.getFirstName() == null || user.getFirstName().trim().isEmpty()) {
-            errors.add("firstName es requerido y no puede estar vacío");
-        }
-
-        // Validar email
-        if (user.getEmail() == null || user.getEmail().trim().isEmpty()) {
-            errors.add("email es requerido");
-        } else if (!isValidEmail(user.getEmail())) {
-            errors.add("email debe tener formato válido");
-        }
-
-        // Validar age
-        if (user.getAge() == null) {
-            errors.add("age es requerido");
-        } else if (user.getAge() < 18 || user.getAge() > 65) {
-            errors.add("age debe estar entre 18 y 65 años");
-        }
-
-        // Validar company.department
-        if (user.getCompany() == null) {
-            errors.add("company es requerido");
-        } else if (user.getCompany().getDepartment() == null ||
-                user.getCompany().getDepartment().trim().isEmpty()) {
-            errors.add("company.department es requerido y no puede estar vacío");
+        if (evaluation.isValid()) {
+            log.debug("Usuario {} válido", user.getId());
+            return ValidationResult.valid(user);
         }
+        List<String> errors = evaluation.getErrors();
+        log.warn("Usuario {} inválido: {}", user.getId(), errors);
+        return ValidationResult.invalid(user, errors);
+    }
 
-        return errors;
+    /**
+     * Valida un bloque de usuarios de una vez (pipeline fusionado)
+     * No arma ValidationResult ni mensajes: las filas inválidas se materializan con invalidResult
+     */
+    public ValidationBatchResult validateBatch(User[] users, int count) {
+        ValidationBatchResult result = validationEngine.evaluateBatch(users, count);
+        log.debug("Bloque de {} usuarios validado: {} válidos", count, result.getValidCount());
+        return result;
     }
 
     /**
-     * Valida formato de email usando regex simple
+     * Arma el resultado inválido de una fila del bloque con sus mensajes de error
      */
-    private boolean isValidEmail(String email) {
-        return email.matches("^[A-Za-z0-9+_.-]+@([A-Za-z0-9.-]+\\.[A-Za-z]{2,})$");
+    public ValidationResult invalidResult(User user, ValidationBatchResult validation, int row) {
+        List<String> errors = validation.getErrors(row);
+        log.warn("Usuario {} inválido: {}", user.getId(), errors);
+        return ValidationResult.invalid(user, errors);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,370 @@
+package com.challenge.telus.routes;
+
+import com.challenge.telus.models.ApiResponse;
+import com.challenge.telus.models.ExtractionJob;
+import com.challenge.telus.models.PageRangeCompletion;
+import com.challenge.telus.models.PageRangeTask;
+import com.challenge.telus.processors.JsonlWriterProcessor;
+import com.challenge.telus.services.AdaptivePageSizer;
+import com.challenge.telus.services.PageRangeCompletionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.component.kafka.consumer.KafkaManualCommit;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Extracción distribuida por rangos de páginas
+ * El coordinador divide [0, total) en rangos y los publica como items de trabajo en Kafka;
+ * cualquier instancia del extractor (incluido el coordinador) toma rangos del topic, descarga
+ * sus páginas con fetch-page y publica un registro de completitud. Los registros de
+ * completitud reemplazan al checkpoint local: al reanudar solo se republican los rangos que
+ * no tienen registro. Un rango que falla max-range-attempts veces se registra como FAILED y
+ * su item de trabajo se confirma, para no bloquear al resto de la partición; se vuelve a
+ * publicar en la próxima reanudación de la corrida. La planificación espera a que el topic de completitud se haya leído
+ * hasta los offsets finales que tenía al arrancar, para no reanudar sobre una vista parcial.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "extractor.distributed.enabled", havingValue = "true")
+public class DistributedExtractionRoute extends RouteBuilder {
+
+    private static final DateTimeFormatter RUN_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final Duration KAFKA_METADATA_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ProducerTemplate producerTemplate;
+    private final ObjectMapper objectMapper;
+    private final JsonlWriterProcessor jsonlWriterProcessor;
+    private final PageRangeCompletionService completionService;
+    private final AdaptivePageSizer pageSizer;
+    private final String kafkaBootstrapServers;
+    private final String tasksTopic;
+    private final String completionsTopic;
+    private final String workerGroupId;
+    private final Integer workerConsumers;
+    private final Integer rangePages;
+    private final Long runTimeout;
+    private final Integer maxRangeAttempts;
+    private final String workerId;
+    private final Map<String, Integer> rangeAttempts = new ConcurrentHashMap<>();
+
+    public DistributedExtractionRoute(
+            ProducerTemplate producerTemplate,
+            ObjectMapper objectMapper,
+            JsonlWriterProcessor jsonlWriterProcessor,
+            PageRangeCompletionService completionService,
+            AdaptivePageSizer pageSizer,
+            @Value("${kafka.bootstrap-servers}") String kafkaBootstrapServers,
+            @Value("${extractor.distributed.topics.tasks:extraction-range-tasks}") String tasksTopic,
+            @Value("${extractor.distributed.topics.completions:extraction-range-completions}") String completionsTopic,
+            @Value("${extractor.distributed.group-id:telus-extractor-workers}") String workerGroupId,
+            @Value("${extractor.distributed.consumers-count:1}") Integer workerConsumers,
+            @Value("${extractor.distributed.range-pages:10}") Integer rangePages,
+            @Value("${extractor.distributed.run-timeout:1800000}") Long runTimeout,
+            @Value("${extractor.distributed.max-range-attempts:3}") Integer maxRangeAttempts,
+            @Value("${extractor.distributed.worker-id:}") String workerId) {
+        this.producerTemplate = producerTemplate;
+        this.objectMapper = objectMapper;
+        this.jsonlWriterProcessor = jsonlWriterProcessor;
+        this.completionService = completionService;
+        this.pageSizer = pageSizer;
+        this.kafkaBootstrapServers = kafkaBootstrapServers;
+        this.tasksTopic = tasksTopic;
+        this.completionsTopic = completionsTopic;
+        this.workerGroupId = workerGroupId;
+        this.workerConsumers = workerConsumers;
+        this.rangePages = Math.max(1, rangePages);
+        this.runTimeout = runTimeout;
+        this.maxRangeAttempts = Math.max(1, maxRangeAttempts);
+        this.workerId = workerId == null || workerId.isBlank() ? UUID.randomUUID().toString() : workerId;
+    }
+
+    @Override
+    public void configure() throws Exception {
+
+        // Coordinación: planifica (o reanuda) la corrida, publica los rangos pendientes y espera su completitud
+        from("direct:coordinate-extraction")
+            .routeId("coordinate-extraction-route")
+            .log("Iniciando extracción distribuida")
+            .process(this::planRun)
+            .split(exchangeProperty("pendingTasks"))
+                .to("direct:publish-range-task")
+            .end()
+            .process(this::awaitRun)
+            .log("Extracción distribuida ${header.runId} finalizada, completa: ${body}");
+
+        from("direct:publish-range-task")
+            .routeId("publish-range-task-route")
+            .process(exchange -> {
+                PageRangeTask task = exchange.getIn().getBody(PageRangeTask.class);
+                exchange.getIn().setHeader(KafkaConstants.KEY, task.key());
+                exchange.getIn().setBody(objectMapper.writeValueAsString(task));
+            })
+            .to("kafka:" + tasksTopic + "?brokers=" + kafkaBootstrapServers);
+
+        from("direct:publish-range-completion")
+            .routeId("publish-range-completion-route")
+            .process(exchange -> {
+                PageRangeCompletion record = exchange.getIn().getBody(PageRangeCompletion.class);
+                exchange.getIn().setHeader(KafkaConstants.KEY, record.getRunId() + ":"
+                        + (record.getRangeIndex() != null ? record.getRangeIndex() : "plan"));
+                exchange.getIn().setBody(objectMapper.writeValueAsString(record));
+            })
+            .to("kafka:" + completionsTopic + "?brokers=" + kafkaBootstrapServers);
+
+        // Worker: toma rangos del topic compartido; el offset se confirma recién con el rango publicado
+        // Ante un error se vuelve a leer el mismo rango (breakOnFirstError) hasta agotar los intentos
+        from("kafka:" + tasksTopic +
+             "?brokers=" + kafkaBootstrapServers +
+             "&groupId=" + workerGroupId +
+             "&consumersCount=" + workerConsumers +
+             "&maxPollRecords=1" +
+             "&autoOffsetReset=earliest" +
+             "&autoCommitEnable=false" +
+             "&allowManualCommit=true" +
+             "&breakOnFirstError=true")
+            .routeId("range-worker-route")
+            .process(this::processRange);
+
+        // Vista de completitud: cada instancia lee el topic desde el principio al arrancar
+        from("kafka:" + completionsTopic +
+             "?brokers=" + kafkaBootstrapServers +
+             "&groupId=telus-extractor-completions-" + workerId +
+             "&seekTo=BEGINNING" +
+             "&autoCommitEnable=false")
+            .routeId("range-completions-route")
+            .process(this::consumeCompletion);
+
+        // Offsets finales del topic de completitud al arrancar: hasta leerlos no se planifica
+        from("timer:range-completions-catch-up?repeatCount=1")
+            .routeId("range-completions-catch-up-route")
+            .process(exchange -> captureCompletionsEndOffsets());
+    }
+
+    /**
+     * Reanuda la última corrida incompleta o planifica una nueva a partir del total de la API
+     */
+    private void planRun(Exchange exchange) throws InterruptedException {
+        // Si al arrancar no se pudieron leer los offsets finales (Kafka caído) se reintenta ahora
+        captureCompletionsEndOffsets();
+        if (!completionService.awaitReady(runTimeout)) {
+            throw new RuntimeException("El topic de completitud no terminó de leerse en " + runTimeout
+                    + " ms, no se planifica la extracción");
+        }
+
+        PageRangeCompletion plan = completionService.findResumableRun().orElse(null);
+
+        if (plan != null) {
+            log.info("Reanudando extracción distribuida {}", plan.getRunId());
+        } else {
+            int totalRecords = getTotalRecords();
+            if (totalRecords <= 0) {
+                throw new RuntimeException("No se pudo obtener el total de registros para planificar la extracción");
+            }
+
+            int limit = pageSizer.currentLimit();
+            int rangeSize = limit * rangePages;
+            int rangeCount = (totalRecords + rangeSize - 1) / rangeSize;
+            plan = PageRangeCompletion.planned(LocalDateTime.now().format(RUN_ID_FORMAT), rangeCount,
+                    totalRecords, limit, rangePages);
+
+            // El plan se publica antes que los rangos para que cualquier nodo pueda reanudar la corrida
+            producerTemplate.sendBody("direct:publish-range-completion", plan);
+            completionService.record(plan);
+            log.info("Extracción distribuida {} planificada: {} registros en {} rangos de {} páginas",
+                    plan.getRunId(), totalRecords, rangeCount, rangePages);
+        }
+
+        List<PageRangeTask> tasks = new ArrayList<>();
+        int rangeSize = plan.getLimit() * plan.getRangePages();
+        List<Integer> missingRanges = completionService.getMissingRanges(plan.getRunId());
+        // Los rangos que fallaron en un intento anterior se vuelven a publicar y esperar
+        completionService.retryRanges(plan.getRunId(), missingRanges);
+        for (Integer rangeIndex : missingRanges) {
+            PageRangeTask task = new PageRangeTask();
+            task.setRunId(plan.getRunId());
+            task.setRangeIndex(rangeIndex);
+            task.setRangeCount(plan.getRangeCount());
+            task.setStartSkip(rangeIndex * rangeSize);
+            task.setEndSkip(Math.min(plan.getTotalRecords(), (rangeIndex + 1) * rangeSize));
+            task.setLimit(plan.getLimit());
+            task.setCreatedAt(LocalDateTime.now());
+            tasks.add(task);
+        }
+
+        ExtractionJob job = exchange.getProperty("extractionJob", ExtractionJob.class);
+        if (job != null) {
+            job.setRunId(plan.getRunId());
+        }
+
+        exchange.setProperty("runId", plan.getRunId());
+        exchange.setProperty("pendingTasks", tasks);
+        exchange.getMessage().setHeader("runId", plan.getRunId());
+        log.info("Publicando {} rangos pendientes de la extracción {}", tasks.size(), plan.getRunId());
+    }
+
+    /**
+     * Espera los registros de completitud de todos los rangos de la corrida
+     */
+    private void awaitRun(Exchange exchange) throws InterruptedException {
+        String runId = exchange.getProperty("runId", String.class);
+        boolean completed = completionService.awaitRun(runId, runTimeout);
+        if (!completed) {
+            log.warn("La extracción distribuida {} no se completó, rangos pendientes: {}, rangos fallidos: {}",
+                    runId, completionService.getMissingRanges(runId), completionService.getFailedRanges(runId));
+        }
+        exchange.getMessage().setHeader("runId", runId);
+        exchange.getMessage().setBody(completed);
+    }
+
+    /**
+     * Procesa un item de trabajo; tras max-range-attempts intentos fallidos registra el rango como FAILED
+     */
+    private void processRange(Exchange exchange) throws Exception {
+        PageRangeTask task = objectMapper.readValue(exchange.getIn().getBody(String.class), PageRangeTask.class);
+
+        if (completionService.isRangeCompleted(task.getRunId(), task.getRangeIndex())) {
+            log.info("Rango {} ya completado, se descarta el item de trabajo", task.key());
+            commit(exchange);
+            return;
+        }
+
+        int attempt = rangeAttempts.merge(task.key(), 1, Integer::sum);
+        log.info("Procesando rango {} de {} (intento {}) - Skip: [{}, {})", task.getRangeIndex() + 1,
+                task.getRangeCount(), attempt, task.getStartSkip(), task.getEndSkip());
+
+        try {
+            downloadRange(task);
+        } catch (Exception e) {
+            if (attempt < maxRangeAttempts) {
+                log.warn("Error en el rango {} (intento {} de {}), se reintentará", task.key(), attempt,
+                        maxRangeAttempts, e);
+                throw e;
+            }
+            // Se registra el fallo y se confirma el offset para no bloquear los demás rangos de la partición
+            log.error("El rango {} falló {} veces, se registra como fallido", task.key(), attempt, e);
+            PageRangeCompletion failure = PageRangeCompletion.failed(task, attempt, e.getMessage(), workerId);
+            producerTemplate.sendBody("direct:publish-range-completion", failure);
+            completionService.record(failure);
+        }
+        rangeAttempts.remove(task.key());
+        commit(exchange);
+    }
+
+    /**
+     * Descarga las páginas del rango, escribe su archivo y publica el registro de completitud
+     */
+    private void downloadRange(PageRangeTask task) throws IOException {
+        List<byte[]> pages = new ArrayList<>();
+        int records = 0;
+        for (int skip = task.getStartSkip(); skip < task.getEndSkip(); skip += task.getLimit()) {
+            int pageSkip = skip;
+            int pageLimit = Math.min(task.getLimit(), task.getEndSkip() - skip);
+            Exchange page = producerTemplate.request("direct:fetch-page", pageExchange -> {
+                pageExchange.getIn().setHeader("skip", pageSkip);
+                pageExchange.getIn().setHeader("limit", pageLimit);
+            });
+
+            if (!(page.getMessage().getBody() instanceof ApiResponse apiResponse)) {
+                throw new RuntimeException("No se pudo obtener la página con skip " + pageSkip + " del rango " + task.key());
+            }
+            pages.add(jsonlWriterProcessor.renderPage(apiResponse));
+            records += apiResponse.getUsers() != null ? apiResponse.getUsers().size() : apiResponse.getRawUserCount();
+        }
+
+        String outputFile = jsonlWriterProcessor.writeRangeFile(task.getRunId(), task.getRangeIndex(), pages);
+        PageRangeCompletion completion = PageRangeCompletion.completed(task, records, outputFile, workerId);
+        producerTemplate.sendBody("direct:publish-range-completion", completion);
+        completionService.record(completion);
+
+        log.info("Rango {} completado: {} registros en {}", task.key(), records, outputFile);
+    }
+
+    /**
+     * Registra un registro del topic de completitud y su offset para el control de lectura inicial
+     */
+    private void consumeCompletion(Exchange exchange) {
+        try {
+            completionService.record(objectMapper.readValue(exchange.getIn().getBody(String.class),
+                    PageRangeCompletion.class));
+        } catch (IOException e) {
+            log.error("Registro de completitud inválido, se ignora: {}", exchange.getIn().getBody(String.class), e);
+        } finally {
+            Integer partition = exchange.getIn().getHeader(KafkaConstants.PARTITION, Integer.class);
+            Long offset = exchange.getIn().getHeader(KafkaConstants.OFFSET, Long.class);
+            if (partition != null && offset != null) {
+                completionService.recordOffset(partition, offset);
+            }
+        }
+    }
+
+    /**
+     * Lee los offsets finales de cada partición del topic de completitud (una sola vez)
+     */
+    private void captureCompletionsEndOffsets() {
+        if (completionService.hasCatchUpOffsets()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(properties)) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(completionsTopic, KAFKA_METADATA_TIMEOUT);
+            // Sin particiones (topic todavía no creado) la vista queda lista de inmediato
+            List<TopicPartition> partitions = partitionInfos == null ? List.of() : partitionInfos.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            Map<Integer, Long> endOffsets = new HashMap<>();
+            consumer.endOffsets(partitions, KAFKA_METADATA_TIMEOUT)
+                    .forEach((partition, offset) -> endOffsets.put(partition.partition(), offset));
+            completionService.setCatchUpOffsets(endOffsets);
+        }
+    }
+
+    private void commit(Exchange exchange) {
+        KafkaManualCommit manualCommit = exchange.getIn().getHeader(KafkaConstants.MANUAL_COMMIT, KafkaManualCommit.class);
+        if (manualCommit != null) {
+            manualCommit.commit();
+        }
+    }
+
+    /**
+     * Obtiene el total de registros de la API con una página de un registro
+     */
+    private int getTotalRecords() {
+        Exchange exchange = producerTemplate.request("direct:fetch-page", request -> {
+            request.getIn().setHeader("skip", 0);
+            request.getIn().setHeader("limit", 1);
+        });
+
+        Object body = exchange.getMessage().getBody();
+        if (body instanceof ApiResponse response && response.getTotal() != null) {
+            return response.getTotal();
+        }
+        return 0;
+    }
+}
@@ -46,6 +46,9 @@ public class KafkaConsumerRoute extends RouteBuilder {
     @Value("${kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${kafka.consumer.consumers-count:1}")
+    private Integer consumersCount;
+
     @Value("${sftp.host}")
     private String sftpHost;
 
@@ -102,6 +105,7 @@ public class KafkaConsumerRoute extends RouteBuilder {
         from("kafka:" + topic + 
              "?brokers=" + kafkaBootstrapServers +
              "&groupId=" + groupId +
+             "&consumersCount=" + consumersCount +
              "&autoOffsetReset=earliest" +
              "&autoCommitEnable=false" +
              "&allowManualCommit=true")
@@ -117,7 +121,7 @@ public class KafkaConsumerRoute extends RouteBuilder {
                         throw new RuntimeException("Deserialization failed", e);
                     }
                 })
-                .log("Message deserialized: File=${body.sourceFile}, Valid records=${body.validRecords}")
+                .log("Message deserialized: File=${body.sourceFile}, Valid records=${body.validRecords}, Compression=${body.compression}")
                 .setProperty("sourceFile", simple("${body.sourceFile}"))
                 // Process files: save to DB and upload to SFTP
                 .to("direct:process-files")
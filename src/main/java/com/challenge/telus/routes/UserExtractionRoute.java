@@ -2,17 +2,31 @@ package com.challenge.telus.routes;
 
 import com.challenge.telus.models.ApiResponse;
 import com.challenge.telus.models.ExtractionState;
+import com.challenge.telus.processors.DeltaFilterProcessor;
+import com.challenge.telus.processors.HedgedPageFetchProcessor;
 import com.challenge.telus.processors.JsonlWriterProcessor;
 import com.challenge.telus.processors.PaginationProcessor;
+import com.challenge.telus.processors.StreamingPageProcessor;
+import com.challenge.telus.services.AdaptivePageSizer;
+import com.challenge.telus.services.ExtractionJobService;
 import com.challenge.telus.services.ExtractionStateService;
+import com.challenge.telus.services.UserFieldProjection;
+import com.challenge.telus.services.UserFingerprintIndex;
+import com.challenge.telus.utils.PageFingerprints;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.StreamCache;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.model.dataformat.JsonLibrary;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 /**
  * Ruta principal para la extracción de usuarios
  * Maneja la paginación, reintentos y persistencia de estado
@@ -24,35 +38,65 @@ public class UserExtractionRoute extends RouteBuilder {
     private final ExtractionStateService stateService;
     private final PaginationProcessor paginationProcessor;
     private final JsonlWriterProcessor jsonlWriterProcessor;
+    private final StreamingPageProcessor streamingPageProcessor;
+    private final ProducerTemplate producerTemplate;
+    private final AdaptivePageSizer pageSizer;
+    private final HedgedPageFetchProcessor hedgedPageFetchProcessor;
+    private final DeltaFilterProcessor deltaFilterProcessor;
+    private final UserFingerprintIndex fingerprintIndex;
+    private final ExtractionJobService jobService;
+    private final UserFieldProjection fieldProjection;
     private final String apiUrl;
-    private final Integer limit;
     private final String cronExpression;
     private final Integer maxRetries;
     private final Long initialDelay;
     private final Double multiplier;
     private final Long maxDelay;
+    private final Boolean concurrencyEnabled;
+    private final Integer concurrencyWorkers;
+    private final Boolean streamingParsing;
     
     public UserExtractionRoute(
             ExtractionStateService stateService,
             PaginationProcessor paginationProcessor,
             JsonlWriterProcessor jsonlWriterProcessor,
+            StreamingPageProcessor streamingPageProcessor,
+            ProducerTemplate producerTemplate,
+            AdaptivePageSizer pageSizer,
+            HedgedPageFetchProcessor hedgedPageFetchProcessor,
+            DeltaFilterProcessor deltaFilterProcessor,
+            UserFingerprintIndex fingerprintIndex,
+            ExtractionJobService jobService,
+            UserFieldProjection fieldProjection,
             @Value("${api.users.url}") String apiUrl,
-            @Value("${api.users.limit}") Integer limit,
             @Value("${extractor.schedule.cron}") String cronExpression,
             @Value("${extractor.error.max-retries}") Integer maxRetries,
             @Value("${extractor.error.initial-delay}") Long initialDelay,
             @Value("${extractor.error.multiplier}") Double multiplier,
-            @Value("${extractor.error.max-delay}") Long maxDelay) {
+            @Value("${extractor.error.max-delay}") Long maxDelay,
+            @Value("${extractor.concurrency.enabled:false}") Boolean concurrencyEnabled,
+            @Value("${extractor.concurrency.workers:4}") Integer concurrencyWorkers,
+            @Value("${extractor.parsing.mode:binding}") String parsingMode) {
         this.stateService = stateService;
         this.paginationProcessor = paginationProcessor;
         this.jsonlWriterProcessor = jsonlWriterProcessor;
+        this.streamingPageProcessor = streamingPageProcessor;
+        this.producerTemplate = producerTemplate;
+        this.pageSizer = pageSizer;
+        this.hedgedPageFetchProcessor = hedgedPageFetchProcessor;
+        this.deltaFilterProcessor = deltaFilterProcessor;
+        this.fingerprintIndex = fingerprintIndex;
+        this.jobService = jobService;
+        this.fieldProjection = fieldProjection;
         this.apiUrl = apiUrl;
-        this.limit = limit;
         this.cronExpression = cronExpression;
         this.maxRetries = maxRetries;
         this.initialDelay = initialDelay;
         this.multiplier = multiplier;
         this.maxDelay = maxDelay;
+        this.concurrencyEnabled = concurrencyEnabled;
+        this.concurrencyWorkers = concurrencyWorkers;
+        this.streamingParsing = "streaming".equalsIgnoreCase(parsingMode);
     }
     
     @Override
@@ -68,9 +112,13 @@ public class UserExtractionRoute extends RouteBuilder {
                         .retryAttemptedLogLevel(LoggingLevel.WARN))
             .routeId("user-extraction-route")
             .log("Iniciando extracción de usuarios programada")
-            .process(this::initializeExtraction)
-            .to("direct:extract-users")
-            .log("Extracción de usuarios completada");
+            // En modo distribuido solo la instancia coordinadora inicia extracciones
+            .filter(exchange -> jobService.acceptsTriggers())
+                .process(this::initializeExtraction)
+                // Se ejecuta como job para no superponerse con una extracción disparada por la API
+                .process(exchange -> exchange.getMessage().setBody(jobService.submit("scheduled").job().getJobId()))
+                .log("Extracción de usuarios programada en el job ${body}")
+            .end();
         
         // Ruta de extracción principal
         from("direct:extract-users")
@@ -86,9 +134,34 @@ public class UserExtractionRoute extends RouteBuilder {
             .loopDoWhile(header("shouldContinue"))
                 .to("direct:fetch-page")
                 .process(this::handlePageResponse)
+                .filter(exchangeProperty("fanOutSkips").isNotNull())
+                    .to("direct:fetch-remaining-pages")
+                .end()
             .end()
             .log("Proceso de extracción finalizado");
         
+        // Ruta para descargar en paralelo las páginas restantes una vez conocido el total
+        // Las respuestas se agregan en el orden de las páginas, por lo que el JSONL y el
+        // checkpoint avanzan igual que en el modo secuencial
+        ExecutorService fanOutExecutor = getContext().getExecutorServiceManager()
+                .newFixedThreadPool(this, "ExtractionFanOut", concurrencyWorkers);
+        
+        from("direct:fetch-remaining-pages")
+            .routeId("fetch-remaining-pages-route")
+            .log("Descargando ${exchangeProperty.fanOutSkips.size()} páginas restantes con " + concurrencyWorkers + " workers")
+            .setBody(exchangeProperty("fanOutSkips"))
+            .split(body(), this::aggregatePageInOrder)
+                .parallelProcessing()
+                .executorService(fanOutExecutor)
+                .setHeader("skip", body())
+                .setHeader("limit", exchangeProperty("fanOutLimit"))
+                .to("direct:fetch-page")
+            .end()
+            .removeProperty("fanOutSkips")
+            .removeProperty("fanOutLimit")
+            .setHeader("shouldContinue", constant(false))
+            .log("Descarga paralela de páginas finalizada");
+        
         // Ruta para obtener una página de la API con reintentos
         from("direct:fetch-page")
                 .errorHandler(defaultErrorHandler()
@@ -100,16 +173,39 @@ public class UserExtractionRoute extends RouteBuilder {
             .routeId("fetch-page-route")
             .log("Obteniendo página de usuarios - Skip: ${header.skip}, Limit: ${header.limit}")
             .setHeader(Exchange.HTTP_METHOD, constant("GET"))
-            .setHeader(Exchange.HTTP_URI, simple(apiUrl + "?skip=${header.skip}&limit=${header.limit}"))
-            .to("http://dummy")
-            .unmarshal().json(JsonLibrary.Jackson, ApiResponse.class)
+            // La proyección pide a la API solo los campos que se validan y enriquecen
+            .setHeader(Exchange.HTTP_URI, simple(apiUrl + "?skip=${header.skip}&limit=${header.limit}"
+                    + fieldProjection.getQueryParameters()))
+            .process(exchange -> exchange.setProperty("pageStartTime", System.currentTimeMillis()))
+            .choice()
+                .when(exchange -> hedgedPageFetchProcessor.isEnabled())
+                    // Duplica el request si tarda más que el percentil configurado de la latencia reciente
+                    .process(hedgedPageFetchProcessor)
+                .otherwise()
+                    .to("http://dummy")
+            .end()
+            .process(this::recordPageMetrics)
+            .choice()
+                .when(exchange -> streamingParsing)
+                    // Copia los usuarios como bytes JSONL sin construir la lista de User
+                    .process(streamingPageProcessor)
+                .otherwise()
+                    .unmarshal().json(JsonLibrary.Jackson, ApiResponse.class)
+            .end()
             .log("Página obtenida exitosamente")
             .onException(Exception.class)
                 .log("Error al obtener página - Skip: ${header.skip}, Error: ${exception.message}")
                 .handled(true)
+                .process(this::recordPageError)
                 .to("direct:handle-error")
             .end();
         
+        // Intento individual de una página usado por el hedging; los reintentos los maneja fetch-page
+        from("direct:fetch-page-attempt")
+                .errorHandler(noErrorHandler())
+            .routeId("fetch-page-attempt-route")
+            .to("http://dummy");
+        
         // Ruta de error para reintentos
         from("direct:handle-error")
                 .errorHandler(defaultErrorHandler()
@@ -141,17 +237,24 @@ public class UserExtractionRoute extends RouteBuilder {
         // Primero obtenemos el total de registros
         Integer totalRecords = getTotalRecords();
         
+        // Si la corrida anterior terminó pero no llegó a publicar su último segmento, se publica ahora
+        ExtractionState previousState = stateService.loadState();
+        if (previousState != null && previousState.isComplete()) {
+            jsonlWriterProcessor.finishRun(previousState);
+            stateService.saveState(previousState);
+        }
+        
         // Obtenemos o creamos el estado
-        ExtractionState state = stateService.getOrCreateState(totalRecords, limit);
+        ExtractionState state = stateService.getOrCreateState(totalRecords, pageSizer.currentLimit());
         exchange.setProperty("extractionState", state);
         
         // Configuramos los parámetros iniciales
-        exchange.getMessage().setHeader("skip", state.getLastSuccessfulSkip());
-        exchange.getMessage().setHeader("limit", limit);
+        exchange.getMessage().setHeader("skip", state.getResumeSkip());
+        exchange.getMessage().setHeader("limit", pageSizer.currentLimit());
         exchange.getMessage().setHeader("shouldContinue", true);
         
         log.info("Extracción preparada - Skip inicial: {}, Total: {}", 
-                state.getLastSuccessfulSkip(), totalRecords);
+                state.getResumeSkip(), totalRecords);
     }
     
     /**
@@ -167,11 +270,16 @@ public class UserExtractionRoute extends RouteBuilder {
             return;
         }
         
-        // Escribir usuarios en JSONL
-        if (apiResponse.getUsers() != null && !apiResponse.getUsers().isEmpty()) {
-            exchange.getMessage().setBody(apiResponse.getUsers());
+        // Escribir usuarios en JSONL (en modo streaming se escriben los bytes ya copiados)
+        // En modo delta solo se escriben los usuarios nuevos o modificados
+        exchange.removeProperty("pendingFingerprints");
+        if (!apiResponse.isEmpty()) {
+            exchange.getMessage().setBody(apiResponse);
             try {
-                jsonlWriterProcessor.process(exchange);
+                deltaFilterProcessor.process(exchange);
+                if (exchange.getMessage().getBody() != null) {
+                    jsonlWriterProcessor.process(exchange);
+                }
             } catch (Exception e) {
                 log.error("Error al escribir usuarios en JSONL", e);
                 exchange.getMessage().setHeader("shouldContinue", false);
@@ -190,33 +298,141 @@ public class UserExtractionRoute extends RouteBuilder {
         }
         
         // Actualizar estado
+        Integer skipped = exchange.getProperty("recordsSkipped", 0, Integer.class);
+        state.setRecordsSkipped((state.getRecordsSkipped() != null ? state.getRecordsSkipped() : 0) + skipped);
         stateService.saveState(state);
         
+        // Las huellas se registran recién con la página confirmada en el checkpoint
+        PageFingerprints pendingFingerprints = exchange.getProperty("pendingFingerprints", PageFingerprints.class);
+        if (pendingFingerprints != null) {
+            fingerprintIndex.commit(pendingFingerprints.getFingerprints());
+        }
+        exchange.removeProperty("pendingFingerprints");
+        exchange.removeProperty("recordsSkipped");
+        
+        // Al completar, publicar el último segmento y registrar el manifiesto final
+        if (state.isComplete()) {
+            jsonlWriterProcessor.finishRun(state);
+            stateService.saveState(state);
+        }
+        
         // Configurar para la siguiente iteración
         Boolean shouldContinue = exchange.getProperty("shouldContinue", Boolean.class);
         exchange.getMessage().setHeader("shouldContinue", shouldContinue);
         
         if (shouldContinue) {
             exchange.getMessage().setHeader("skip", state.getNextSkip());
-            exchange.getMessage().setHeader("limit", limit);
+            exchange.getMessage().setHeader("limit", pageSizer.currentLimit());
+            planFanOut(exchange, state);
+        }
+    }
+    
+    /**
+     * Si la concurrencia está habilitada y ya se conoce el total, planifica los skips
+     * restantes para descargarlos en paralelo en lugar de continuar el loop secuencial
+     */
+    private void planFanOut(Exchange exchange, ExtractionState state) {
+        if (!concurrencyEnabled || exchange.getProperty("fanOutSkips") != null
+                || state.getTotalRecords() == null || state.getTotalRecords() <= 0) {
+            return;
+        }
+        
+        // Las páginas en paralelo se planifican con el limit vigente, que queda fijo para el resto de la corrida
+        int limit = pageSizer.currentLimit();
+        List<Integer> skips = new ArrayList<>();
+        for (int skip = state.getNextSkip(); skip < state.getTotalRecords(); skip += limit) {
+            skips.add(skip);
+        }
+        
+        if (skips.size() > 1) {
+            exchange.setProperty("fanOutSkips", skips);
+            exchange.setProperty("fanOutLimit", limit);
+            log.info("Planificadas {} páginas restantes para descarga paralela desde skip {}",
+                    skips.size(), state.getNextSkip());
+        }
+    }
+    
+    /**
+     * Agrega las páginas descargadas en paralelo. Camel las entrega en el orden del split,
+     * así que cada página se escribe y se registra en el checkpoint en orden. Si una página
+     * falla, las siguientes se descartan para que la reanudación parta desde ese skip.
+     */
+    private Exchange aggregatePageInOrder(Exchange oldExchange, Exchange newExchange) {
+        Exchange result = oldExchange != null ? oldExchange : newExchange;
+        Integer skip = newExchange.getMessage().getHeader("skip", Integer.class);
+        
+        if (Boolean.TRUE.equals(result.getProperty("fanOutStopped", Boolean.class))) {
+            log.warn("Página con skip {} descartada por un error en una página anterior", skip);
+            return result;
+        }
+        
+        if (!(newExchange.getMessage().getBody() instanceof ApiResponse)) {
+            log.error("No se obtuvo respuesta válida para la página con skip {}, deteniendo la descarga paralela", skip);
+            result.setProperty("fanOutStopped", true);
+            return result;
         }
+        
+        handlePageResponse(newExchange);
+        
+        Boolean shouldContinue = newExchange.getMessage().getHeader("shouldContinue", Boolean.class);
+        if (!Boolean.TRUE.equals(shouldContinue)) {
+            // Última página o error al escribir: no se deben registrar más páginas
+            result.setProperty("fanOutStopped", true);
+        }
+        return result;
+    }
+    
+    /**
+     * Registra un error de página para el tamaño adaptativo y el progreso de la extracción
+     */
+    private void recordPageError(Exchange exchange) {
+        pageSizer.recordError();
+        stateService.recordError();
+    }
+    
+    /**
+     * Registra latencia y tamaño de la página para el ajuste adaptativo del limit
+     */
+    private void recordPageMetrics(Exchange exchange) {
+        Long startTime = exchange.getProperty("pageStartTime", Long.class);
+        Integer pageLimit = exchange.getIn().getHeader("limit", Integer.class);
+        if (startTime == null || pageLimit == null) {
+            return;
+        }
+        
+        long latency = System.currentTimeMillis() - startTime;
+        Object body = exchange.getIn().getBody();
+        long bytes;
+        if (body instanceof StreamCache cache) {
+            bytes = cache.length();
+        } else if (body instanceof byte[] data) {
+            bytes = data.length;
+        } else {
+            bytes = exchange.getIn().getHeader(Exchange.CONTENT_LENGTH, 0L, Long.class);
+        }
+        
+        log.debug("Página con skip {} obtenida en {} ms ({} bytes)",
+                exchange.getIn().getHeader("skip"), latency, bytes);
+        pageSizer.recordPage(pageLimit, latency, bytes);
     }
     
     /**
      * Obtiene el total de registros de la API
+     * Usa la misma ruta fetch-page (y el mismo cliente HTTP) que el resto de las páginas
      */
     private Integer getTotalRecords() {
         try {
             // Hacer una llamada inicial para obtener el total
-            Exchange exchange = getContext().createProducerTemplate().request(
-                apiUrl + "?skip=0&limit=1", 
-                exchange1 -> {
-                    exchange1.getIn().setHeader(Exchange.HTTP_METHOD, "GET");
-                }
-            );
+            Exchange exchange = producerTemplate.request("direct:fetch-page", exchange1 -> {
+                exchange1.getIn().setHeader("skip", 0);
+                exchange1.getIn().setHeader("limit", 1);
+            });
             
-            ApiResponse response = exchange.getIn().getBody(ApiResponse.class);
-            return response != null ? response.getTotal() : 0;
+            Object body = exchange.getMessage().getBody();
+            if (body instanceof ApiResponse response && response.getTotal() != null) {
+                return response.getTotal();
+            }
+            return 0;
             
         } catch (Exception e) {
             log.error("Error al obtener el total de registros", e);
@@ -6,25 +6,52 @@ import com.challenge.telus.models.ValidatedUser;
 import com.challenge.telus.models.ValidationResult;
 import com.challenge.telus.processors.DeadLetterQueueProcessor;
 import com.challenge.telus.processors.DepartmentEnrichmentProcessor;
+import com.challenge.telus.processors.FusedUserPipelineProcessor;
 import com.challenge.telus.processors.UserValidationProcessor;
+import com.challenge.telus.services.OutputWriterManager;
+import com.challenge.telus.services.ProcessedUserIndex;
+import com.challenge.telus.utils.CompressionUtil;
+import com.challenge.telus.utils.JsonlOutputFiles;
+import com.challenge.telus.utils.MappedLineReader;
+import com.challenge.telus.utils.OutputFileStats;
+import com.challenge.telus.utils.ProcessedUserIds;
+import com.challenge.telus.utils.RecordCounters;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
 import org.apache.camel.LoggingLevel;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.builder.ThreadPoolProfileBuilder;
 import org.apache.camel.component.jackson.JacksonDataFormat;
+import org.apache.camel.model.SplitDefinition;
+import org.apache.camel.model.TryDefinition;
 import org.apache.camel.model.dataformat.JsonLibrary;
+import org.apache.camel.spi.ThreadPoolProfile;
+import org.apache.camel.support.ExpressionAdapter;
+import org.apache.camel.util.concurrent.ThreadPoolRejectedPolicy;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Ruta principal para la transformación y validación de usuarios
  * Se activa cuando aparece un nuevo archivo JSONL en raw_users/
  * Procesa línea por línea, valida, enriquece y guarda resultados
+ * Los archivos de entrada .jsonl.gz se descomprimen de forma transparente y los de
+ * salida (processed y dlq) se escriben con la compresión configurada
+ * En modo paralelo las líneas se parsean, validan y enriquecen en un pool acotado; la salida
+ * se escribe en orden de llegada (unordered) o respetando el orden de entrada (ordered)
+ * En modo fused (por defecto) cada lote de líneas pasa por un único procesador fusionado;
+ * el modo routes recorre las rutas direct: por línea con su traza y queda para depuración
+ * Con el lector mmap los archivos sin comprimir se mapean en memoria y los lotes de líneas
+ * llegan al pipeline fusionado como bytes (LineBatch), sin pasar por String
  */
 @Slf4j
 @Component
@@ -33,26 +60,66 @@ public class UserTransformationRoute extends RouteBuilder {
     private final UserValidationProcessor userValidationProcessor;
     private final DepartmentEnrichmentProcessor departmentEnrichmentProcessor;
     private final DeadLetterQueueProcessor deadLetterQueueProcessor;
+    private final FusedUserPipelineProcessor fusedUserPipelineProcessor;
+    private final OutputWriterManager outputWriterManager;
+    private final ProcessedUserIndex processedUserIndex;
     private final ObjectMapper objectMapper;
     private final JacksonDataFormat jacksonDataFormat;
     private final String rawUsersDirectory;
     private final String processedUsersDirectory;
+    private final String compression;
+    private final Boolean parallelEnabled;
+    private final Integer parallelWorkers;
+    private final Integer parallelQueueSize;
+    private final Boolean orderedOutput;
+    private final Boolean fusedPipeline;
+    private final Integer pipelineBatchSize;
+    private final Boolean mappedReader;
+    private final Long mmapWindowBytes;
 
     public UserTransformationRoute(
             UserValidationProcessor userValidationProcessor,
             DepartmentEnrichmentProcessor departmentEnrichmentProcessor,
             DeadLetterQueueProcessor deadLetterQueueProcessor,
+            FusedUserPipelineProcessor fusedUserPipelineProcessor,
+            OutputWriterManager outputWriterManager,
+            ProcessedUserIndex processedUserIndex,
             ObjectMapper objectMapper,
             @Qualifier("jackson") JacksonDataFormat jacksonDataFormat,
             @Value("${extractor.output.directory:raw_users}") String rawUsersDirectory,
-            @Value("${transformation.output.processed-directory:processed_users}") String processedUsersDirectory) {
+            @Value("${transformation.output.processed-directory:processed_users}") String processedUsersDirectory,
+            @Value("${transformation.output.compression:none}") String compression,
+            @Value("${transformation.parallel.enabled:false}") Boolean parallelEnabled,
+            @Value("${transformation.parallel.workers:4}") Integer parallelWorkers,
+            @Value("${transformation.parallel.queue-size:1000}") Integer parallelQueueSize,
+            @Value("${transformation.parallel.ordering:unordered}") String ordering,
+            @Value("${transformation.pipeline.mode:fused}") String pipelineMode,
+            @Value("${transformation.pipeline.batch-size:500}") Integer pipelineBatchSize,
+            @Value("${transformation.input.reader:mmap}") String inputReader,
+            @Value("${transformation.input.mmap-window-bytes:268435456}") Long mmapWindowBytes) {
         this.userValidationProcessor = userValidationProcessor;
         this.departmentEnrichmentProcessor = departmentEnrichmentProcessor;
         this.deadLetterQueueProcessor = deadLetterQueueProcessor;
+        this.fusedUserPipelineProcessor = fusedUserPipelineProcessor;
+        this.outputWriterManager = outputWriterManager;
+        this.processedUserIndex = processedUserIndex;
         this.objectMapper = objectMapper;
         this.jacksonDataFormat = jacksonDataFormat;
         this.rawUsersDirectory = rawUsersDirectory;
         this.processedUsersDirectory = processedUsersDirectory;
+        this.compression = CompressionUtil.normalize(compression);
+        this.parallelEnabled = parallelEnabled;
+        this.parallelWorkers = parallelWorkers;
+        this.parallelQueueSize = parallelQueueSize;
+        this.orderedOutput = "ordered".equalsIgnoreCase(ordering);
+        this.fusedPipeline = !"routes".equalsIgnoreCase(pipelineMode);
+        this.pipelineBatchSize = pipelineBatchSize;
+        // Las líneas como bytes solo las consume el pipeline fusionado
+        this.mappedReader = "mmap".equalsIgnoreCase(inputReader) && fusedPipeline;
+        this.mmapWindowBytes = mmapWindowBytes;
+        if ("mmap".equalsIgnoreCase(inputReader) && !fusedPipeline) {
+            log.warn("El lector mmap requiere el pipeline fused; se usa la lectura por stream");
+        }
 
         // Crear directorio de usuarios procesados si no existe
         createProcessedUsersDirectoryIfNotExists();
@@ -62,28 +129,61 @@ public class UserTransformationRoute extends RouteBuilder {
     public void configure() throws Exception {
 
         // Ruta principal: Monitorear archivos JSONL en raw_users/
-        from("file:" + rawUsersDirectory + "?include=.*\\.jsonl&move=.done&moveFailed=.error&initialDelay=5000&delay=30000")
+        from("file:" + rawUsersDirectory + "?include=.*\\.jsonl(\\.gz)?&move=.done&moveFailed=.error&initialDelay=5000&delay=30000")
                 .routeId("user-transformation-route")
                 .log("Archivo JSONL detectado: ${file:name}")
                 .process(this::logFileInfo)
                 .process(this::initializeProcessedFileFromInput)
-                .setProperty("validRecords", constant(0))
-                .setProperty("invalidRecords", constant(0))
-                .setProperty("totalRecords", constant(0))
-                .to("direct:process-jsonl-file")
+                .process(this::openInputFile)
+                .doTry()
+                    .to("direct:process-jsonl-file")
+                .doFinally()
+                    .process(this::closeOutputFiles)
+                .end()
                 .process(this::sendFileProcessedMessage)
                 .log("Procesamiento de archivo completado: ${file:name}");
 
         // Ruta para procesar archivo JSONL línea por línea
-        from("direct:process-jsonl-file")
+        // En modo fused cada exchange del split es un lote de líneas; en modo routes, una línea
+        SplitDefinition lines = from("direct:process-jsonl-file")
                 .routeId("process-jsonl-file-route")
-                .log("Iniciando procesamiento línea por línea")
-                .split().tokenize("\n")
-                .streaming()
-                .process(this::logLineProcessing)
-                .to("direct:process-user-line")
+                .log("Iniciando procesamiento línea por línea (pipeline " + (fusedPipeline ? "fused" : "routes") + ")")
+                .split(lineSplitExpression())
+                .streaming();
+
+        if (parallelEnabled) {
+            // Pool acotado: con la cola llena, el hilo del split procesa la línea (CallerRuns)
+            ThreadPoolProfile profile = new ThreadPoolProfileBuilder("TransformationWorkers")
+                    .poolSize(parallelWorkers)
+                    .maxPoolSize(parallelWorkers)
+                    .maxQueueSize(parallelQueueSize)
+                    .rejectedPolicy(ThreadPoolRejectedPolicy.CallerRuns)
+                    .build();
+            ExecutorService transformationExecutor = getContext().getExecutorServiceManager()
+                    .newThreadPool(this, "TransformationWorkers", profile);
+            lines.parallelProcessing().executorService(transformationExecutor);
+            log.info("Transformación en paralelo con {} workers (salida {})", parallelWorkers,
+                    orderedOutput ? "ordenada" : "sin orden");
+        }
+
+        TryDefinition lineProcessing = lines.doTry();
+        if (fusedPipeline) {
+            lineProcessing.process(fusedUserPipelineProcessor);
+        } else {
+            // Modo de depuración: cada línea recorre las rutas direct: con su traza
+            lineProcessing
+                    .process(this::logLineProcessing)
+                    .to("direct:process-user-line");
+        }
+        lineProcessing
+                .doFinally()
+                    // En modo ordenado libera la salida retenida de esta línea o lote (también si falló)
+                    .process(this::completeLine)
                 .end()
-                .log("Procesamiento de todas las líneas completado");
+            .end()
+            .process(this::publishRecordCounts)
+            .log("Procesamiento de todas las líneas completado: ${exchangeProperty.validRecords} válidos, "
+                    + "${exchangeProperty.invalidRecords} inválidos, ${exchangeProperty.duplicateRecords} duplicados");
 
         // Ruta para procesar una línea individual
         from("direct:process-user-line")
@@ -95,7 +195,8 @@ public class UserTransformationRoute extends RouteBuilder {
                 .log("Procesando línea: ${body}")
                 .process(this::parseUserFromLine)
                 .choice()
-                .when(body().isNotNull())
+                // El mensaje del split es un mensaje de archivo: con body null vuelve a devolver el File
+                .when(exchange -> exchange.getIn().getBody() instanceof User)
                 .to("direct:validate-user")
                 .otherwise()
                 .log("Línea vacía o inválida, saltando")
@@ -107,7 +208,8 @@ public class UserTransformationRoute extends RouteBuilder {
                 .log("Validando usuario: ${body.id}")
                 .process(userValidationProcessor)
                 .choice()
-                .when(body().isNotNull())
+                // El body siempre es un ValidationResult: se enruta según el resultado, igual que el pipeline fusionado
+                .when(exchange -> exchange.getIn().getBody(ValidationResult.class).isValid())
                 .to("direct:enrich-user")
                 .otherwise()
                 .log("Usuario inválido, enviando a DLQ")
@@ -144,6 +246,27 @@ public class UserTransformationRoute extends RouteBuilder {
                 .log("Archivo procesado enviado a Kafka: ${body}");
     }
 
+    /**
+     * Expresión del split: el lector mapeado itera sus propios lotes; el resto se tokeniza por líneas
+     */
+    private Expression lineSplitExpression() {
+        Expression tokenizer = fusedPipeline
+                ? body().tokenize("\n", pipelineBatchSize, false)
+                : body().tokenize("\n");
+        return new ExpressionAdapter() {
+            @Override
+            public void init(CamelContext context) {
+                tokenizer.init(context);
+            }
+
+            @Override
+            public Object evaluate(Exchange exchange) {
+                Object body = exchange.getIn().getBody();
+                return body instanceof MappedLineReader ? body : tokenizer.evaluate(exchange, Object.class);
+            }
+        };
+    }
+
     /**
      * Registra información del archivo que se está procesando
      */
@@ -157,7 +280,7 @@ public class UserTransformationRoute extends RouteBuilder {
      * Registra el procesamiento de cada línea
      */
     private void logLineProcessing(Exchange exchange) {
-        Integer lineNumber = exchange.getIn().getHeader("CamelSplitIndex", Integer.class);
+        Integer lineNumber = exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class);
         String line = exchange.getIn().getBody(String.class);
         log.debug("Procesando línea {}: {}", lineNumber, line != null ? line.substring(0, Math.min(50, line.length())) + "..." : "null");
     }
@@ -185,6 +308,62 @@ public class UserTransformationRoute extends RouteBuilder {
         }
     }
 
+    /**
+     * Si el archivo de entrada está comprimido, reemplaza el body por el flujo descomprimido
+     * para que el split lea las líneas sin cambios; si no lo está y el lector es mmap, por el
+     * lector mapeado que entrega los lotes de líneas como bytes
+     */
+    private void openInputFile(Exchange exchange) throws IOException {
+        String fileName = exchange.getIn().getHeader("CamelFileName", String.class);
+        if (CompressionUtil.GZIP.equals(CompressionUtil.formatOf(fileName))) {
+            File file = exchange.getIn().getBody(File.class);
+            exchange.getIn().setBody(CompressionUtil.openForRead(file));
+            log.debug("Archivo {} descomprimido en streaming", fileName);
+        } else if (mappedReader) {
+            // Un archivo comprimido no puede mapearse; el resto se lee por ventanas mapeadas
+            File file = exchange.getIn().getBody(File.class);
+            MappedLineReader reader = new MappedLineReader(file.toPath(), pipelineBatchSize, mmapWindowBytes);
+            exchange.setProperty("mappedLineReader", reader);
+            exchange.getIn().setBody(reader);
+            log.debug("Archivo {} mapeado en memoria", fileName);
+        }
+    }
+
+    /**
+     * Cierra los archivos de salida del archivo procesado (también si el procesamiento falló)
+     */
+    private void closeOutputFiles(Exchange exchange) {
+        MappedLineReader reader = exchange.getProperty("mappedLineReader", MappedLineReader.class);
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Error al cerrar el archivo mapeado", e);
+            }
+        }
+        JsonlOutputFiles outputFiles = exchange.getProperty("jsonlOutputFiles", JsonlOutputFiles.class);
+        boolean durable = outputFiles == null || outputFiles.closeAll();
+
+        // Los ids escritos se confirman solo si el archivo terminó bien y su salida quedó en disco
+        ProcessedUserIds processedIds = exchange.getProperty("processedUserIds", ProcessedUserIds.class);
+        if (processedIds == null) {
+            return;
+        }
+        boolean failed = exchange.getException() != null || exchange.getProperty(Exchange.EXCEPTION_CAUGHT) != null;
+        if (failed || !durable) {
+            processedUserIndex.releaseAll(processedIds.toArray());
+            log.warn("Archivo no procesado por completo, se descartan {} ids de usuarios procesados",
+                    processedIds.size());
+            return;
+        }
+        try {
+            processedUserIndex.commitAll(processedIds.toArray());
+        } catch (IOException e) {
+            processedUserIndex.releaseAll(processedIds.toArray());
+            log.error("Error al persistir el índice de usuarios procesados", e);
+        }
+    }
+
     /**
      * Inicializa el archivo de usuarios procesados basado en el archivo de entrada
      */
@@ -193,17 +372,23 @@ public class UserTransformationRoute extends RouteBuilder {
         String timestamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         
         // Generar nombre de archivo basado en el input
-        String baseName = inputFileName != null ? inputFileName.replace(".jsonl", "") : "records";
-        String outputFileName = "etl_" + baseName + "_" + timestamp + ".jsonl";
+        String baseName = inputFileName != null ? CompressionUtil.stripExtension(inputFileName).replace(".jsonl", "") : "records";
+        String extension = ".jsonl" + CompressionUtil.extension(compression);
+        String outputFileName = "etl_" + baseName + "_" + timestamp + extension;
         String outputFilePath = processedUsersDirectory + "/" + outputFileName;
         
-        String dlqFileName = "invalid_" + baseName + "_" + timestamp + ".jsonl";
+        String dlqFileName = "invalid_" + baseName + "_" + timestamp + extension;
         String dlqFilePath = processedUsersDirectory + "/../dlq/" + dlqFileName;
 
         exchange.setProperty("processedFileName", outputFileName);
         exchange.setProperty("processedFilePath", outputFilePath);
         exchange.setProperty("dlqFileName", dlqFileName);
         exchange.setProperty("dlqFilePath", dlqFilePath);
+        // Se crean antes del split para que todas las líneas compartan los mismos archivos abiertos y contadores
+        exchange.setProperty("jsonlOutputFiles", new JsonlOutputFiles(outputWriterManager,
+                parallelEnabled && orderedOutput));
+        exchange.setProperty("recordCounters", new RecordCounters());
+        exchange.setProperty("processedUserIds", new ProcessedUserIds());
 
         log.info("Archivo de salida inicializado: {} (entrada: {})", outputFileName, inputFileName);
     }
@@ -225,20 +410,16 @@ public class UserTransformationRoute extends RouteBuilder {
             return;
         }
 
-        try {
-            // Crear archivo si no existe
-            File file = new File(filePath);
-            if (!file.exists()) {
-                file.getParentFile().mkdirs();
-                file.createNewFile();
-            }
+        JsonlOutputFiles outputFiles = exchange.getProperty("jsonlOutputFiles", JsonlOutputFiles.class);
+        if (outputFiles == null) {
+            log.error("Archivos de salida no inicializados");
+            return;
+        }
 
+        try {
             // Escribir usuario en formato JSONL (usar objectMapper inyectado)
-            try (java.io.FileWriter writer = new java.io.FileWriter(file, true)) {
-                String jsonLine = objectMapper.writeValueAsString(validatedUser);
-                writer.write(jsonLine + "\n");
-                writer.flush();
-            }
+            outputFiles.writeLine(filePath, objectMapper.writeValueAsBytes(validatedUser),
+                    exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class));
 
             log.debug("Usuario {} guardado en archivo procesado", validatedUser.getId());
 
@@ -268,15 +449,34 @@ public class UserTransformationRoute extends RouteBuilder {
      * Incrementa el contador de registros válidos
      */
     private void incrementValidRecords(Exchange exchange) {
-        Integer validRecords = exchange.getProperty("validRecords", Integer.class);
-        if (validRecords != null) {
-            exchange.setProperty("validRecords", validRecords + 1);
+        RecordCounters counters = exchange.getProperty("recordCounters", RecordCounters.class);
+        if (counters != null) {
+            counters.incrementValid();
         }
-        
-        Integer totalRecords = exchange.getProperty("totalRecords", Integer.class);
-        if (totalRecords != null) {
-            exchange.setProperty("totalRecords", totalRecords + 1);
+    }
+
+    /**
+     * Marca la línea como terminada para el writer ordenado
+     */
+    private void completeLine(Exchange exchange) throws IOException {
+        JsonlOutputFiles outputFiles = exchange.getProperty("jsonlOutputFiles", JsonlOutputFiles.class);
+        if (outputFiles != null) {
+            outputFiles.completeSequence(exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class));
+        }
+    }
+
+    /**
+     * Copia los contadores agregados del split a las propiedades del exchange del archivo
+     */
+    private void publishRecordCounts(Exchange exchange) {
+        RecordCounters counters = exchange.getProperty("recordCounters", RecordCounters.class);
+        if (counters == null) {
+            return;
         }
+        exchange.setProperty("validRecords", counters.getValidRecords());
+        exchange.setProperty("invalidRecords", counters.getInvalidRecords());
+        exchange.setProperty("totalRecords", counters.getTotalRecords());
+        exchange.setProperty("duplicateRecords", counters.getDuplicateRecords());
     }
 
     /**
@@ -290,10 +490,14 @@ public class UserTransformationRoute extends RouteBuilder {
         // Construir ruta del archivo raw (en .done)
         String rawFilePath = rawUsersDirectory + "/.done/" + sourceFile;
 
-        // Contar registros leyendo los archivos generados
-        int validRecords = countLinesInFile(processedFilePath);
-        int invalidRecords = countLinesInFile(dlqFilePath);
-        int totalRecords = validRecords + invalidRecords;
+        // Contadores agregados del split y resumen de cada archivo calculado al escribirlo
+        int validRecords = exchange.getProperty("validRecords", 0, Integer.class);
+        int invalidRecords = exchange.getProperty("invalidRecords", 0, Integer.class);
+        int totalRecords = exchange.getProperty("totalRecords", validRecords + invalidRecords, Integer.class);
+        int duplicateRecords = exchange.getProperty("duplicateRecords", 0, Integer.class);
+        JsonlOutputFiles outputFiles = exchange.getProperty("jsonlOutputFiles", JsonlOutputFiles.class);
+        OutputFileStats processedStats = outputFiles != null ? outputFiles.getStats(processedFilePath) : OutputFileStats.EMPTY;
+        OutputFileStats dlqStats = outputFiles != null ? outputFiles.getStats(dlqFilePath) : OutputFileStats.EMPTY;
 
         // Crear mensaje con toda la información del archivo
         FileProcessedMessage message = new FileProcessedMessage();
@@ -304,7 +508,15 @@ public class UserTransformationRoute extends RouteBuilder {
         message.setTotalRecords(totalRecords);
         message.setValidRecords(validRecords);
         message.setInvalidRecords(invalidRecords);
+        message.setDuplicateRecords(duplicateRecords);
         message.setProcessingDate(LocalDateTime.now());
+        message.setRawCompression(CompressionUtil.formatOf(sourceFile));
+        message.setCompression(compression);
+        message.setRawFileBytes(exchange.getIn().getHeader("CamelFileLength", Long.class));
+        message.setProcessedFileBytes(processedStats.bytes());
+        message.setProcessedFileChecksum(processedStats.checksum());
+        message.setDlqFileBytes(dlqStats.bytes());
+        message.setDlqFileChecksum(dlqStats.checksum());
 
         log.info("Archivo procesado: {} → {} válidos, {} inválidos, {} total", 
                 sourceFile, validRecords, invalidRecords, totalRecords);
@@ -319,29 +531,4 @@ public class UserTransformationRoute extends RouteBuilder {
             log.error("Failed to send file message to Kafka", e);
         }
     }
-
-    /**
-     * Cuenta las líneas de un archivo
-     */
-    private int countLinesInFile(String filePath) {
-        if (filePath == null || filePath.isEmpty()) {
-            return 0;
-        }
-
-        File file = new File(filePath);
-        if (!file.exists()) {
-            return 0;
-        }
-
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader(file))) {
-            int lines = 0;
-            while (reader.readLine() != null) {
-                lines++;
-            }
-            return lines;
-        } catch (Exception e) {
-            log.error("Error al contar líneas del archivo {}", filePath, e);
-            return 0;
-        }
-    }
 }
@@ -0,0 +1,148 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.ExtractionState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Servicio que ajusta el tamaño de página (limit) de la API de usuarios
+ * En modo adaptativo, agranda o achica el limit según la latencia observada por página,
+ * los bytes por página y la tasa de errores, siempre dentro de los límites configurados.
+ * Con el modo deshabilitado siempre devuelve el limit configurado.
+ */
+@Slf4j
+@Service
+public class AdaptivePageSizer {
+
+    /**
+     * Peso de la última observación en los promedios móviles
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private final ExtractionStateService stateService;
+    private final boolean enabled;
+    private final int configuredLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMs;
+    private final long maxPageBytes;
+    private final double maxErrorRate;
+
+    private volatile int currentLimit;
+    private double latencyAverage = -1;
+    private double bytesPerRecordAverage = -1;
+    private double errorRateAverage = 0;
+
+    public AdaptivePageSizer(
+            ExtractionStateService stateService,
+            @Value("${api.users.limit:100}") Integer configuredLimit,
+            @Value("${extractor.adaptive-limit.enabled:false}") Boolean enabled,
+            @Value("${extractor.adaptive-limit.min:20}") Integer minLimit,
+            @Value("${extractor.adaptive-limit.max:500}") Integer maxLimit,
+            @Value("${extractor.adaptive-limit.target-latency:2000}") Long targetLatencyMs,
+            @Value("${extractor.adaptive-limit.max-page-bytes:1048576}") Long maxPageBytes,
+            @Value("${extractor.adaptive-limit.max-error-rate:0.2}") Double maxErrorRate) {
+        this.stateService = stateService;
+        this.enabled = enabled;
+        this.configuredLimit = configuredLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyMs = targetLatencyMs;
+        this.maxPageBytes = maxPageBytes;
+        this.maxErrorRate = maxErrorRate;
+        this.currentLimit = configuredLimit;
+    }
+
+    /**
+     * Arranca desde el último limit usado en la corrida anterior, si existe
+     */
+    @PostConstruct
+    public void seedFromLastRun() {
+        if (!enabled) {
+            return;
+        }
+
+        ExtractionState lastState = stateService.loadState();
+        if (lastState != null && lastState.getLimit() != null) {
+            currentLimit = clamp(lastState.getLimit());
+            log.info("Tamaño de página adaptativo inicializado desde la última corrida: {}", currentLimit);
+        } else {
+            currentLimit = clamp(configuredLimit);
+        }
+    }
+
+    /**
+     * Devuelve el limit a usar para la próxima página
+     */
+    public int currentLimit() {
+        return enabled ? currentLimit : configuredLimit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra una página obtenida correctamente y recalcula el limit
+     */
+    public synchronized void recordPage(int limit, long latencyMs, long bytes) {
+        if (!enabled || limit < minLimit) {
+            return;
+        }
+
+        latencyAverage = average(latencyAverage, latencyMs);
+        if (bytes > 0) {
+            bytesPerRecordAverage = average(bytesPerRecordAverage, (double) bytes / limit);
+        }
+        errorRateAverage = average(errorRateAverage, 0);
+
+        adjust();
+    }
+
+    /**
+     * Registra una página fallida (error HTTP, timeout o respuesta inválida)
+     */
+    public synchronized void recordError() {
+        if (!enabled) {
+            return;
+        }
+
+        errorRateAverage = average(errorRateAverage, 1);
+        adjust();
+    }
+
+    /**
+     * Achica el limit a la mitad ante errores, un 25% si la página es lenta o pesada,
+     * y lo agranda un 25% si hay margen de sobra en latencia y tamaño
+     */
+    private void adjust() {
+        int previous = currentLimit;
+        long projectedBytes = bytesPerRecordAverage > 0 ? (long) (bytesPerRecordAverage * currentLimit) : 0;
+
+        if (errorRateAverage > maxErrorRate) {
+            currentLimit = clamp(currentLimit / 2);
+        } else if (latencyAverage > targetLatencyMs || projectedBytes > maxPageBytes) {
+            currentLimit = clamp(currentLimit * 3 / 4);
+        } else if (latencyAverage >= 0 && latencyAverage < targetLatencyMs / 2.0
+                && projectedBytes * 5 / 4 <= maxPageBytes) {
+            currentLimit = clamp(Math.max(currentLimit + 1, currentLimit * 5 / 4));
+        }
+
+        if (currentLimit != previous) {
+            log.info("Tamaño de página ajustado {} -> {} (latencia media: {} ms, bytes/registro: {}, tasa de error: {})",
+                    previous, currentLimit, Math.round(latencyAverage), Math.round(bytesPerRecordAverage),
+                    String.format("%.2f", errorRateAverage));
+        }
+    }
+
+    private double average(double previous, double value) {
+        return previous < 0 ? value : SMOOTHING * value + (1 - SMOOTHING) * previous;
+    }
+
+    private int clamp(int limit) {
+        return Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+}
@@ -0,0 +1,286 @@
+package com.challenge.telus.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Control de tráfico del cliente hacia la API de usuarios
+ * Combina un token bucket (requests por segundo con ráfaga) con un límite de concurrencia
+ * adaptativo AIMD: crece de forma aditiva con cada respuesta exitosa y se reduce de forma
+ * multiplicativa ante 429, 5xx o timeouts. Un 429 con Retry-After además pausa el bucket.
+ * Se aplica a cada request HTTP, incluidos los reintentos del error handler de Camel.
+ */
+@Slf4j
+@Service
+public class ApiRateLimiter {
+
+    private final boolean enabled;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final double minConcurrency;
+    private final double maxConcurrency;
+    private final double additiveIncrease;
+    private final double backoffRatio;
+    private final long backoffCooldownMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotReleased = lock.newCondition();
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private volatile double concurrencyLimit;
+    private volatile int inFlight;
+    private long lastBackoffNanos;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter throttledCounter;
+    private final Counter backoffCounter;
+    private final Timer waitTimer;
+
+    public ApiRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${extractor.rate-limit.enabled:false}") Boolean enabled,
+            @Value("${extractor.rate-limit.requests-per-second:10}") Double permitsPerSecond,
+            @Value("${extractor.rate-limit.burst:10}") Integer burst,
+            @Value("${extractor.rate-limit.concurrency.initial:4}") Integer initialConcurrency,
+            @Value("${extractor.rate-limit.concurrency.min:1}") Integer minConcurrency,
+            @Value("${extractor.rate-limit.concurrency.max:16}") Integer maxConcurrency,
+            @Value("${extractor.rate-limit.concurrency.additive-increase:1.0}") Double additiveIncrease,
+            @Value("${extractor.rate-limit.concurrency.backoff-ratio:0.5}") Double backoffRatio,
+            @Value("${extractor.rate-limit.concurrency.backoff-cooldown:1000}") Long backoffCooldownMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.additiveIncrease = additiveIncrease;
+        this.backoffRatio = backoffRatio;
+        this.backoffCooldownMs = backoffCooldownMs;
+
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.concurrencyLimit = Math.max(this.minConcurrency, Math.min(this.maxConcurrency, initialConcurrency));
+
+        this.throttledCounter = Counter.builder("extractor.ratelimit.throttled")
+                .description("Respuestas 429 recibidas de la API de usuarios")
+                .register(meterRegistry);
+        this.backoffCounter = Counter.builder("extractor.ratelimit.backoffs")
+                .description("Reducciones multiplicativas del límite de concurrencia")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("extractor.ratelimit.wait")
+                .description("Tiempo de espera por un token y un slot de concurrencia")
+                .register(meterRegistry);
+
+        log.info("Rate limiter de la API {} - {} req/s (ráfaga {}), concurrencia inicial {} [{}-{}]",
+                enabled ? "habilitado" : "deshabilitado", permitsPerSecond, this.burst,
+                this.concurrencyLimit, this.minConcurrency, this.maxConcurrency);
+    }
+
+    /**
+     * Publica los gauges del límite de concurrencia y del bucket, solo con el limitador habilitado
+     */
+    @PostConstruct
+    public void registerGauges() {
+        if (!enabled) {
+            return;
+        }
+
+        Gauge.builder("extractor.ratelimit.concurrency.limit", this, ApiRateLimiter::getConcurrencyLimit)
+                .description("Límite de concurrencia AIMD vigente hacia la API de usuarios")
+                .register(meterRegistry);
+        Gauge.builder("extractor.ratelimit.inflight", this, ApiRateLimiter::getInFlight)
+                .description("Requests en curso hacia la API de usuarios")
+                .register(meterRegistry);
+        Gauge.builder("extractor.ratelimit.tokens", this, ApiRateLimiter::getAvailableTokens)
+                .description("Tokens disponibles en el token bucket")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Espera un token y un slot de concurrencia antes de enviar un request
+     * Cada acquire exitoso debe liberarse con {@link #release()}
+     */
+    public void acquire() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean slotTaken = false;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) concurrencyLimit) {
+                slotReleased.await();
+            }
+            inFlight++;
+            slotTaken = true;
+
+            long waitNanos;
+            while ((waitNanos = reserveToken()) > 0) {
+                slotReleased.awaitNanos(waitNanos);
+            }
+        } catch (InterruptedException e) {
+            if (slotTaken) {
+                inFlight--;
+                slotReleased.signalAll();
+            }
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Libera el slot de concurrencia tomado en {@link #acquire()}
+     */
+    public void release() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            inFlight = Math.max(0, inFlight - 1);
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registra el código HTTP de una respuesta
+     * @param retryAfterSeconds valor del header Retry-After, o null si no vino
+     */
+    public void onResponse(int statusCode, Long retryAfterSeconds) {
+        if (!enabled) {
+            return;
+        }
+
+        if (statusCode == 429) {
+            throttledCounter.increment();
+            pause(retryAfterSeconds);
+            backoff("429");
+        } else if (statusCode >= 500) {
+            backoff(String.valueOf(statusCode));
+        } else if (statusCode < 400) {
+            increase();
+        }
+    }
+
+    /**
+     * Registra un timeout de conexión o de lectura
+     */
+    public void onTimeout() {
+        if (enabled) {
+            backoff("timeout");
+        }
+    }
+
+    public double getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public double getAvailableTokens() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Toma un token si hay disponible; si no, devuelve los nanosegundos a esperar
+     */
+    private long reserveToken() {
+        long now = System.nanoTime();
+        if (now < pausedUntilNanos) {
+            return pausedUntilNanos - now;
+        }
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) ((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill(long now) {
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(burst, tokens + elapsedSeconds * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Incremento aditivo: suma additiveIncrease por cada "ventana" completa de respuestas exitosas
+     */
+    private void increase() {
+        lock.lock();
+        try {
+            double previous = concurrencyLimit;
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + additiveIncrease / concurrencyLimit);
+            if ((int) concurrencyLimit > (int) previous) {
+                log.debug("Límite de concurrencia aumentado a {}", (int) concurrencyLimit);
+                slotReleased.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reducción multiplicativa, a lo sumo una vez por período de cooldown para que
+     * una ráfaga de errores simultáneos no lleve el límite directamente al mínimo
+     */
+    private void backoff(String reason) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - lastBackoffNanos < TimeUnit.MILLISECONDS.toNanos(backoffCooldownMs)) {
+                return;
+            }
+            lastBackoffNanos = now;
+            double previous = concurrencyLimit;
+            concurrencyLimit = Math.max(minConcurrency, concurrencyLimit * backoffRatio);
+            backoffCounter.increment();
+            log.warn("Límite de concurrencia reducido {} -> {} por {}", (int) previous, (int) concurrencyLimit, reason);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pausa la entrega de tokens hasta el Retry-After informado por la API
+     */
+    private void pause(Long retryAfterSeconds) {
+        if (retryAfterSeconds == null || retryAfterSeconds <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+            tokens = 0;
+            log.warn("API con throttling, se pausan los requests por {} s", retryAfterSeconds);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
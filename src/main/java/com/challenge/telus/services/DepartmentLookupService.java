@@ -0,0 +1,263 @@
+package com.challenge.telus.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Búsqueda de códigos de departamento a partir del CSV de departamentos
+ * Los mapeos viven en un snapshot inmutable con claves normalizadas (sin acentos, espacios
+ * colapsados, minúsculas) que se reemplaza de forma atómica cuando el archivo cambia, sin
+ * reiniciar el pipeline. Cada snapshot tiene un cache acotado de nombres tal como llegan en
+ * los usuarios, con su código ya resuelto y el contador de aciertos o fallos del departamento.
+ * Los contadores se publican en Micrometer (transformation.department.lookups) y se pueden
+ * consultar por departamento en el endpoint de actuator "departments".
+ */
+@Slf4j
+@Service
+public class DepartmentLookupService {
+
+    private static final String METRIC_NAME = "transformation.department.lookups";
+    private static final String OTHER_DEPARTMENTS = "_other";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final CamelContext camelContext;
+    private final Resource departmentsResource;
+    private final MeterRegistry meterRegistry;
+    private final String defaultCode;
+    private final int cacheSize;
+    private final int maxMissTags;
+    private final long reloadIntervalMillis;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final Map<String, Counter> hitCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> missCounters = new ConcurrentHashMap<>();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private long departmentsLastModified;
+
+    public DepartmentLookupService(
+            CamelContext camelContext,
+            MeterRegistry meterRegistry,
+            @Value("${transformation.validation.departments-file:classpath:data/departments.csv}") Resource departmentsResource,
+            @Value("${transformation.departments.default-code:UNK}") String defaultCode,
+            @Value("${transformation.departments.cache-size:1024}") Integer cacheSize,
+            @Value("${transformation.departments.max-miss-tags:100}") Integer maxMissTags,
+            @Value("${transformation.departments.reload-interval-ms:30000}") Long reloadIntervalMillis) {
+        this.camelContext = camelContext;
+        this.departmentsResource = departmentsResource;
+        this.meterRegistry = meterRegistry;
+        this.defaultCode = defaultCode;
+        this.cacheSize = cacheSize;
+        this.maxMissTags = maxMissTags;
+        this.reloadIntervalMillis = reloadIntervalMillis != null ? reloadIntervalMillis : 0;
+
+        try {
+            this.departmentsLastModified = lastModified();
+            this.snapshot.set(load());
+            log.info("Cargados {} mapeos de departamentos", snapshot.get().codes().size());
+        } catch (Exception e) {
+            log.error("Error al cargar mapeos de departamentos", e);
+            throw new RuntimeException("No se pudieron cargar los mapeos de departamentos", e);
+        }
+    }
+
+    /**
+     * Arranca la verificación periódica del CSV de departamentos, si hay intervalo configurado
+     */
+    @PostConstruct
+    public void startReloader() {
+        if (reloadIntervalMillis <= 0) {
+            return;
+        }
+
+        ScheduledExecutorService reloader = camelContext.getExecutorServiceManager()
+                .newSingleThreadScheduledExecutor(this, "DepartmentsReload");
+        reloader.scheduleWithFixedDelay(this::reloadIfModified, reloadIntervalMillis, reloadIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Código del departamento, o el código por defecto si no hay mapeo (se cuenta como fallo)
+     */
+    public String getDepartmentCode(String departmentName) {
+        Snapshot current = snapshot.get();
+        String key = departmentName != null ? departmentName : "";
+
+        Resolution resolution = current.cache().get(key);
+        if (resolution == null) {
+            resolution = resolve(current, key);
+            if (current.cache().size() < cacheSize) {
+                current.cache().put(key, resolution);
+            }
+        }
+        resolution.counter().increment();
+        return resolution.code();
+    }
+
+    /**
+     * Verifica si existe un mapeo para un departamento (no afecta los contadores)
+     */
+    public boolean hasDepartmentMapping(String departmentName) {
+        return departmentName != null && snapshot.get().codes().containsKey(normalize(departmentName));
+    }
+
+    /**
+     * Aciertos y fallos acumulados por departamento (nombre del CSV o nombre normalizado sin mapeo)
+     */
+    public Map<String, Object> getLookupStats() {
+        Map<String, Object> hits = new TreeMap<>();
+        hitCounters.forEach((department, counter) -> hits.put(department, (long) counter.count()));
+        Map<String, Object> misses = new TreeMap<>();
+        missCounters.forEach((department, counter) -> misses.put(department, (long) counter.count()));
+
+        Snapshot current = snapshot.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("departments", current.codes().size());
+        stats.put("loadedAt", current.loadedAt());
+        stats.put("cachedNames", current.cache().size());
+        stats.put("defaultCode", defaultCode);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        return stats;
+    }
+
+    /**
+     * Vuelve a leer el CSV y reemplaza el snapshot; si falla se conserva el vigente
+     */
+    public boolean reload() {
+        reloadLock.lock();
+        try {
+            Snapshot loaded = load();
+            snapshot.set(loaded);
+            log.info("Mapeos de departamentos recargados: {} departamentos", loaded.codes().size());
+            return true;
+        } catch (Exception e) {
+            log.error("Error al recargar mapeos de departamentos, se conservan los vigentes", e);
+            return false;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private Resolution resolve(Snapshot current, String departmentName) {
+        String normalized = normalize(departmentName);
+        Department department = current.codes().get(normalized);
+        if (department != null) {
+            return new Resolution(department.code(), hitCounters.computeIfAbsent(department.name(),
+                    name -> counter(name, "hit")));
+        }
+
+        // Los tags de fallos se acotan para no crear un meter por cada valor inesperado
+        String tag = normalized.isEmpty() ? "_empty" : normalized;
+        if (!missCounters.containsKey(tag) && missCounters.size() >= maxMissTags) {
+            tag = OTHER_DEPARTMENTS;
+        }
+        Counter missCounter = missCounters.computeIfAbsent(tag, name -> {
+            log.warn("Departamento sin mapeo, se usa {}: '{}'", defaultCode, departmentName);
+            return counter(name, "miss");
+        });
+        return new Resolution(defaultCode, missCounter);
+    }
+
+    private Counter counter(String department, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("Búsquedas de código de departamento por resultado")
+                .tag("department", department)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private void reloadIfModified() {
+        long modified = lastModified();
+        if (modified > 0 && modified != departmentsLastModified) {
+            // Un archivo inválido se reintenta recién cuando vuelve a cambiar
+            departmentsLastModified = modified;
+            reload();
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return departmentsResource.lastModified();
+        } catch (IOException e) {
+            // Recursos empaquetados en el jar: no se pueden recargar por fecha
+            return 0;
+        }
+    }
+
+    /**
+     * Lee el CSV (primera columna: nombre, segunda: código) con encabezado
+     */
+    private Snapshot load() throws IOException {
+        Map<String, Department> codes = new LinkedHashMap<>();
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setTrim(true)
+                .setIgnoreEmptyLines(true)
+                .build();
+
+        try (Reader reader = new InputStreamReader(departmentsResource.getInputStream(), StandardCharsets.UTF_8);
+             CSVParser parser = format.parse(reader)) {
+            for (CSVRecord record : parser) {
+                if (record.size() < 2 || record.get(0).isEmpty() || record.get(1).isEmpty()) {
+                    log.warn("Línea {} del CSV de departamentos ignorada: {}", record.getRecordNumber(), record);
+                    continue;
+                }
+                Department previous = codes.put(normalize(record.get(0)), new Department(record.get(0), record.get(1)));
+                if (previous != null) {
+                    log.warn("Departamento duplicado en el CSV, se usa la última línea: {}", record.get(0));
+                }
+                log.debug("Mapeo cargado: {} -> {}", record.get(0), record.get(1));
+            }
+        }
+
+        if (codes.isEmpty()) {
+            throw new IOException("El CSV de departamentos no tiene mapeos");
+        }
+        return new Snapshot(Map.copyOf(codes), new ConcurrentHashMap<>(), LocalDateTime.now());
+    }
+
+    /**
+     * Normaliza un nombre de departamento: sin acentos, espacios colapsados y en minúsculas
+     */
+    private static String normalize(String departmentName) {
+        String decomposed = Normalizer.normalize(departmentName.strip(), Normalizer.Form.NFD);
+        String withoutDiacritics = DIACRITICS.matcher(decomposed).replaceAll("");
+        return WHITESPACE.matcher(withoutDiacritics).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private record Department(String name, String code) {
+    }
+
+    private record Resolution(String code, Counter counter) {
+    }
+
+    private record Snapshot(Map<String, Department> codes, Map<String, Resolution> cache, LocalDateTime loadedAt) {
+    }
+}
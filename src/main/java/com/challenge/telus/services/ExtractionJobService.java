@@ -0,0 +1,255 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.ExtractionJob;
+import com.challenge.telus.models.ExtractionState;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Servicio que ejecuta las extracciones como jobs asíncronos
+ * Solo hay una extracción activa a la vez: los disparos que llegan mientras hay un job
+ * en curso se unen a ese job y reciben su mismo ID. El progreso en vivo se calcula a
+ * partir del estado de la extracción.
+ * En modo distribuido el job coordina la corrida por rangos y el progreso se calcula a partir
+ * de los registros de completitud; solo la instancia coordinadora acepta disparos.
+ */
+@Slf4j
+@Service
+public class ExtractionJobService {
+
+    private final CamelContext camelContext;
+    private final ProducerTemplate producerTemplate;
+    private final ExtractionStateService stateService;
+    private final PageRangeCompletionService completionService;
+    private final boolean distributed;
+    private final boolean coordinator;
+    private final Map<String, ExtractionJob> jobs;
+
+    private ExecutorService executor;
+    private ExtractionJob currentJob;
+
+    public ExtractionJobService(
+            CamelContext camelContext,
+            ProducerTemplate producerTemplate,
+            ExtractionStateService stateService,
+            PageRangeCompletionService completionService,
+            @Value("${extractor.jobs.history-size:50}") Integer historySize,
+            @Value("${extractor.distributed.enabled:false}") Boolean distributed,
+            @Value("${extractor.distributed.coordinator:true}") Boolean coordinator) {
+        this.camelContext = camelContext;
+        this.producerTemplate = producerTemplate;
+        this.stateService = stateService;
+        this.completionService = completionService;
+        this.distributed = distributed;
+        this.coordinator = coordinator;
+        this.jobs = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ExtractionJob> eldest) {
+                return size() > historySize && !eldest.getValue().isActive();
+            }
+        };
+    }
+
+    /**
+     * Crea el executor de los jobs; una instancia que no acepta disparos nunca ejecuta extracciones
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!acceptsTriggers()) {
+            return;
+        }
+
+        executor = camelContext.getExecutorServiceManager().newSingleThreadExecutor(this, "ExtractionJobs");
+    }
+
+    /**
+     * Dispara una extracción o se une a la que está en curso
+     * @return el job que ejecutará (o ya ejecuta) la extracción e indicador de si se unió a uno existente
+     */
+    public synchronized Submission submit(String trigger) {
+        if (!acceptsTriggers()) {
+            throw new IllegalStateException("Esta instancia no es coordinadora de la extracción distribuida");
+        }
+        if (currentJob != null && currentJob.isActive()) {
+            currentJob.setCoalescedTriggers(currentJob.getCoalescedTriggers() + 1);
+            log.info("Disparo {} unido al job de extracción en curso {}", trigger, currentJob.getJobId());
+            return new Submission(currentJob, true);
+        }
+
+        ExtractionJob job = ExtractionJob.create(trigger);
+        jobs.put(job.getJobId(), job);
+        currentJob = job;
+        executor.submit(() -> run(job));
+
+        log.info("Job de extracción {} creado (disparo: {})", job.getJobId(), trigger);
+        return new Submission(job, false);
+    }
+
+    /**
+     * Indica si esta instancia puede iniciar extracciones (en modo distribuido, solo el coordinador)
+     */
+    public boolean acceptsTriggers() {
+        return !distributed || coordinator;
+    }
+
+    public synchronized Optional<ExtractionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public synchronized Optional<ExtractionJob> getCurrentJob() {
+        return Optional.ofNullable(currentJob);
+    }
+
+    public synchronized List<ExtractionJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Progreso en vivo de la extracción asociada a un job
+     */
+    public Map<String, Object> getProgress(ExtractionJob job) {
+        if (job.getRunId() != null) {
+            return getDistributedProgress(job);
+        }
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        ExtractionState state = stateService.loadState();
+        if (state == null || job.getStartedAt() == null) {
+            return progress;
+        }
+
+        int records = valueOf(state.getRecordsProcessed());
+        int pages = valueOf(state.getPagesProcessed());
+        int total = valueOf(state.getTotalRecords());
+        LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+        double elapsedSeconds = Math.max(0.001, Duration.between(job.getStartedAt(), end).toMillis() / 1000.0);
+        double recordsPerSecond = Math.max(0, records - job.getBaselineRecords()) / elapsedSeconds;
+        double pagesPerSecond = Math.max(0, pages - job.getBaselinePages()) / elapsedSeconds;
+
+        progress.put("currentSkip", state.getResumeSkip());
+        progress.put("recordsProcessed", records);
+        progress.put("totalRecords", total);
+        progress.put("recordsSkipped", valueOf(state.getRecordsSkipped()));
+        progress.put("pagesProcessed", pages);
+        progress.put("errorCount", valueOf(state.getErrorCount()));
+        progress.put("pagesPerSecond", round(pagesPerSecond));
+        progress.put("recordsPerSecond", round(recordsPerSecond));
+        progress.put("elapsedSeconds", round(elapsedSeconds));
+        if (job.isActive() && recordsPerSecond > 0 && total > records) {
+            progress.put("etaSeconds", round((total - records) / recordsPerSecond));
+        }
+        progress.put("completed", state.isComplete());
+        return progress;
+    }
+
+    /**
+     * Progreso de una corrida distribuida según los rangos completados
+     */
+    private Map<String, Object> getDistributedProgress(ExtractionJob job) {
+        Map<String, Object> progress = completionService.getProgress(job.getRunId());
+        if (progress.isEmpty() || job.getStartedAt() == null) {
+            return progress;
+        }
+
+        int records = (Integer) progress.get("recordsProcessed");
+        LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+        double elapsedSeconds = Math.max(0.001, Duration.between(job.getStartedAt(), end).toMillis() / 1000.0);
+        double recordsPerSecond = records / elapsedSeconds;
+
+        progress.put("recordsPerSecond", round(recordsPerSecond));
+        progress.put("elapsedSeconds", round(elapsedSeconds));
+        int total = valueOf((Integer) progress.get("totalRecords"));
+        if (job.isActive() && recordsPerSecond > 0 && total > records) {
+            progress.put("etaSeconds", round((total - records) / recordsPerSecond));
+        }
+        return progress;
+    }
+
+    /**
+     * Ejecuta la extracción del job en el hilo del servicio
+     */
+    private void run(ExtractionJob job) {
+        ExtractionState previous = stateService.loadState();
+        synchronized (this) {
+            // Al reanudar, las velocidades se calculan solo sobre lo que procese este job
+            if (previous != null && !previous.isComplete()) {
+                job.setBaselineRecords(valueOf(previous.getRecordsProcessed()));
+                job.setBaselinePages(valueOf(previous.getPagesProcessed()));
+            }
+            job.setStatus(ExtractionJob.Status.RUNNING);
+            job.setStartedAt(LocalDateTime.now());
+        }
+
+        try {
+            String endpoint = distributed ? "direct:coordinate-extraction" : "direct:extract-users";
+            Exchange result = producerTemplate.request(endpoint, exchange -> {
+                exchange.setProperty("extractionJob", job);
+                exchange.getIn().setBody("");
+            });
+
+            synchronized (this) {
+                if (result.getException() != null) {
+                    job.setStatus(ExtractionJob.Status.FAILED);
+                    job.setErrorMessage(result.getException().getMessage());
+                } else if (isRunComplete(result)) {
+                    job.setStatus(ExtractionJob.Status.COMPLETED);
+                } else {
+                    job.setStatus(ExtractionJob.Status.FAILED);
+                    job.setErrorMessage("Extracción incompleta, se reanudará en la próxima ejecución");
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error en el job de extracción {}", job.getJobId(), e);
+            synchronized (this) {
+                job.setStatus(ExtractionJob.Status.FAILED);
+                job.setErrorMessage(e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                job.setFinishedAt(LocalDateTime.now());
+            }
+        }
+
+        log.info("Job de extracción {} finalizado: {}", job.getJobId(), job.getStatus());
+    }
+
+    /**
+     * Verifica si la corrida terminó: por el checkpoint local o, en modo distribuido, por el
+     * resultado del coordinador
+     */
+    private boolean isRunComplete(Exchange result) {
+        if (distributed) {
+            return Boolean.TRUE.equals(result.getMessage().getBody(Boolean.class));
+        }
+        ExtractionState state = stateService.loadState();
+        return state != null && state.isComplete();
+    }
+
+    /**
+     * Resultado de un disparo: el job asignado y si se unió a uno en curso
+     */
+    public record Submission(ExtractionJob job, boolean coalesced) {
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
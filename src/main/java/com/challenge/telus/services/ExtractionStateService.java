@@ -1,122 +1,340 @@
 package com.challenge.telus.services;
 
 import com.challenge.telus.models.ExtractionState;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Servicio para manejar el estado de la extracción resumible
- * Persiste el estado en un archivo JSON para poder reanudar la extracción
+ * El estado vigente se mantiene en memoria; cada checkpoint se agrega como una línea
+ * compacta a un journal append-only, que se compacta periódicamente en el archivo de
+ * estado mediante escritura a temporal + rename atómico
  */
 @Slf4j
 @Service
 public class ExtractionStateService {
-    
+
     private final ObjectMapper objectMapper;
     private final String stateDirectory;
     private final String stateFileName;
-    
+    private final String journalFileName;
+    private final int fsyncEvery;
+    private final int compactEvery;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile ExtractionState currentState;
+    private FileChannel journalChannel;
+    private long sequence;
+    private int journalEntries;
+    private int pendingSync;
+
     public ExtractionStateService(
             ObjectMapper objectMapper,
             @Value("${extractor.state.directory:state}") String stateDirectory,
-            @Value("${extractor.state.file:extraction_state.json}") String stateFileName) {
+            @Value("${extractor.state.file:extraction_state.json}") String stateFileName,
+            @Value("${extractor.state.journal-file:extraction_state.journal}") String journalFileName,
+            @Value("${extractor.state.fsync-every:1}") Integer fsyncEvery,
+            @Value("${extractor.state.compact-every:100}") Integer compactEvery) {
         this.objectMapper = objectMapper;
         this.stateDirectory = stateDirectory;
         this.stateFileName = stateFileName;
-        
+        this.journalFileName = journalFileName;
+        this.fsyncEvery = Math.max(1, fsyncEvery);
+        this.compactEvery = Math.max(1, compactEvery);
+
         // Crear directorio de estado si no existe
         createStateDirectoryIfNotExists();
+
+        // Recuperar el último checkpoint (snapshot + journal)
+        recoverState();
     }
-    
+
     /**
-     * Guarda el estado de la extracción en archivo
+     * Registra el estado de la extracción como un nuevo checkpoint en el journal
+     * Se guarda una copia: los cambios posteriores sobre el objeto del llamador no afectan al
+     * checkpoint hasta el próximo saveState, y si la escritura falla el checkpoint vigente no cambia
      */
     public void saveState(ExtractionState state) {
+        lock.lock();
         try {
-            Path statePath = getStateFilePath();
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(statePath.toFile(), state);
-            log.debug("Estado de extracción guardado: {}", state);
-        } catch (IOException e) {
-            log.error("Error al guardar el estado de extracción", e);
-            throw new RuntimeException("No se pudo guardar el estado de extracción", e);
+            try {
+                ExtractionState snapshot = state.copy();
+                // Los errores se registran sobre el estado confirmado (recordError); los checkpoints
+                // de la misma extracción conservan el mayor contador
+                ExtractionState committed = currentState;
+                if (committed != null && Objects.equals(committed.getStartTime(), snapshot.getStartTime())) {
+                    snapshot.setErrorCount(Math.max(valueOf(snapshot.getErrorCount()), valueOf(committed.getErrorCount())));
+                }
+
+                long nextSequence = sequence + 1;
+                byte[] json = objectMapper.writeValueAsBytes(new Checkpoint(nextSequence, snapshot));
+                ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+
+                FileChannel channel = getJournalChannel();
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+                journalEntries++;
+
+                if (++pendingSync >= fsyncEvery) {
+                    channel.force(false);
+                    pendingSync = 0;
+                }
+
+                sequence = nextSequence;
+                currentState = snapshot;
+                log.debug("Checkpoint {} de extracción registrado: {}", sequence, snapshot);
+
+                if (journalEntries >= compactEvery) {
+                    compact();
+                }
+            } catch (IOException e) {
+                log.error("Error al guardar el estado de extracción", e);
+                throw new RuntimeException("No se pudo guardar el estado de extracción", e);
+            }
+        } finally {
+            lock.unlock();
         }
     }
-    
+
     /**
-     * Carga el estado de la extracción desde archivo
+     * Registra un error al obtener una página como un checkpoint del estado confirmado
+     * (puede llamarse desde varios hilos; no incluye el progreso aún no confirmado)
      */
-    public ExtractionState loadState() {
+    public void recordError() {
+        lock.lock();
         try {
-            Path statePath = getStateFilePath();
-            if (Files.exists(statePath)) {
-                ExtractionState state = objectMapper.readValue(statePath.toFile(), ExtractionState.class);
-                log.debug("Estado de extracción cargado: {}", state);
-                return state;
-            } else {
-                log.info("No existe archivo de estado, se creará uno nuevo");
-                return null;
+            ExtractionState committed = currentState;
+            if (committed == null || committed.isComplete()) {
+                return;
             }
-        } catch (IOException e) {
-            log.error("Error al cargar el estado de extracción", e);
-            return null;
+            ExtractionState updated = committed.copy();
+            updated.incrementErrorCount();
+            saveState(updated);
+        } finally {
+            lock.unlock();
         }
     }
-    
+
+    /**
+     * Devuelve una copia del último checkpoint de la extracción (sin acceder a disco)
+     */
+    public ExtractionState loadState() {
+        ExtractionState state = currentState;
+        return state != null ? state.copy() : null;
+    }
+
     /**
-     * Elimina el archivo de estado (usado cuando se completa la extracción)
+     * Elimina el estado (usado cuando se completa la extracción)
      */
     public void clearState() {
+        lock.lock();
         try {
-            Path statePath = getStateFilePath();
-            if (Files.exists(statePath)) {
-                Files.delete(statePath);
+            try {
+                getJournalChannel().truncate(0);
+                getJournalChannel().force(true);
+                Files.deleteIfExists(getStateFilePath());
+                currentState = null;
+                journalEntries = 0;
+                pendingSync = 0;
                 log.info("Estado de extracción eliminado");
+            } catch (IOException e) {
+                log.error("Error al eliminar el estado de extracción", e);
             }
-        } catch (IOException e) {
-            log.error("Error al eliminar el estado de extracción", e);
+        } finally {
+            lock.unlock();
         }
     }
-    
+
     /**
      * Verifica si existe un estado de extracción en progreso
      */
     public boolean hasInProgressExtraction() {
-        ExtractionState state = loadState();
+        ExtractionState state = currentState;
         return state != null && state.getInProgress() != null && state.getInProgress() && !state.isComplete();
     }
-    
+
     /**
      * Obtiene el estado de extracción en progreso o crea uno nuevo
      */
     public ExtractionState getOrCreateState(Integer totalRecords, Integer limit) {
         ExtractionState state = loadState();
-        
+
         if (state == null || state.isComplete()) {
             log.info("Creando nuevo estado de extracción");
             state = ExtractionState.createInitial(totalRecords, limit);
             saveState(state);
         } else {
-            log.info("Reanudando extracción desde skip: {}", state.getLastSuccessfulSkip());
+            log.info("Reanudando extracción desde skip: {}", state.getResumeSkip());
         }
-        
+
         return state;
     }
-    
+
+    /**
+     * Fuerza a disco los checkpoints pendientes y cierra el journal
+     */
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            if (journalChannel == null) {
+                return;
+            }
+            try {
+                journalChannel.force(false);
+                journalChannel.close();
+            } catch (IOException e) {
+                log.error("Error al cerrar el journal de estado", e);
+            } finally {
+                journalChannel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Escribe el estado vigente en el archivo de estado (temporal + rename atómico)
+     * y vacía el journal. Los checkpoints llevan número de secuencia, por lo que un
+     * corte entre el rename y el vaciado no reaplica checkpoints viejos
+     */
+    private void compact() throws IOException {
+        Path statePath = getStateFilePath();
+        Path tempPath = statePath.resolveSibling(stateFileName + ".tmp");
+
+        try (FileChannel tempChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            tempChannel.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(new Checkpoint(sequence, currentState))));
+            tempChannel.force(true);
+        }
+        Files.move(tempPath, statePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        FileChannel channel = getJournalChannel();
+        channel.truncate(0);
+        channel.force(true);
+        journalEntries = 0;
+        pendingSync = 0;
+
+        log.debug("Journal de estado compactado en el checkpoint {}", sequence);
+    }
+
+    /**
+     * Reconstruye el estado desde el archivo de estado y los checkpoints posteriores del journal
+     * Una última línea incompleta (sin salto de línea, escritura cortada) se descarta
+     */
+    private void recoverState() {
+        Path statePath = getStateFilePath();
+        if (Files.exists(statePath)) {
+            try {
+                JsonNode node = objectMapper.readTree(statePath.toFile());
+                if (node.has("state")) {
+                    sequence = node.path("sequence").asLong();
+                    currentState = objectMapper.treeToValue(node.get("state"), ExtractionState.class);
+                } else {
+                    // Formato anterior: el archivo contiene directamente el estado
+                    currentState = objectMapper.treeToValue(node, ExtractionState.class);
+                }
+            } catch (IOException e) {
+                log.error("Error al cargar el archivo de estado de extracción", e);
+            }
+        }
+
+        Path journalPath = getJournalFilePath();
+        if (Files.exists(journalPath)) {
+            try {
+                byte[] journal = Files.readAllBytes(journalPath);
+                int validEnd = replayJournal(journal);
+                if (validEnd < journal.length) {
+                    // Se descarta la cola cortada para que los próximos checkpoints queden en líneas válidas
+                    log.warn("Checkpoint incompleto al final del journal, se descartan {} bytes", journal.length - validEnd);
+                    try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                        channel.truncate(validEnd);
+                        channel.force(true);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Error al leer el journal de estado de extracción", e);
+            }
+        }
+
+        if (currentState != null) {
+            log.info("Estado de extracción recuperado (checkpoint {}): {}", sequence, currentState);
+        } else {
+            log.info("No existe estado de extracción previo, se creará uno nuevo");
+        }
+    }
+
+    /**
+     * Aplica los checkpoints del journal posteriores al archivo de estado
+     * Solo la cola sin salto de línea final es una escritura cortada; las líneas completas que
+     * no se pueden leer se saltean
+     * @return posición donde termina la última línea completa
+     */
+    private int replayJournal(byte[] journal) {
+        int lineStart = 0;
+        for (int i = 0; i < journal.length; i++) {
+            if (journal[i] != '\n') {
+                continue;
+            }
+            if (i > lineStart) {
+                try {
+                    Checkpoint checkpoint = objectMapper.readValue(journal, lineStart, i - lineStart, Checkpoint.class);
+                    journalEntries++;
+                    if (checkpoint.sequence() > sequence) {
+                        sequence = checkpoint.sequence();
+                        currentState = checkpoint.state();
+                    }
+                } catch (IOException e) {
+                    // Una línea completa ilegible se saltea: los checkpoints posteriores siguen siendo válidos
+                    log.warn("Checkpoint ilegible en el journal (byte {}), se saltea: {}", lineStart, e.getMessage());
+                }
+            }
+            lineStart = i + 1;
+        }
+        return lineStart;
+    }
+
+    /**
+     * Abre el journal en modo append la primera vez que se necesita
+     */
+    private FileChannel getJournalChannel() throws IOException {
+        if (journalChannel == null) {
+            journalChannel = FileChannel.open(getJournalFilePath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return journalChannel;
+    }
+
     /**
      * Obtiene la ruta completa del archivo de estado
      */
     private Path getStateFilePath() {
         return Paths.get(stateDirectory, stateFileName);
     }
-    
+
+    /**
+     * Obtiene la ruta completa del journal de checkpoints
+     */
+    private Path getJournalFilePath() {
+        return Paths.get(stateDirectory, journalFileName);
+    }
+
     /**
      * Crea el directorio de estado si no existe
      */
@@ -132,4 +350,14 @@ public class ExtractionStateService {
             throw new RuntimeException("No se pudo crear el directorio de estado", e);
         }
     }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Checkpoint del journal: estado de la extracción con su número de secuencia
+     */
+    record Checkpoint(long sequence, ExtractionState state) {
+    }
 }
@@ -0,0 +1,114 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.utils.CompressionUtil;
+import com.challenge.telus.utils.GroupCommitWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Administra los writers de los archivos de salida de la transformación (processed y dlq)
+ * Mantiene un writer con commit agrupado por archivo mientras dura el archivo de entrada y
+ * commitea periódicamente los que tienen líneas pendientes más viejas que el intervalo
+ */
+@Slf4j
+@Service
+public class OutputWriterManager {
+
+    private final CamelContext camelContext;
+    private final String compression;
+    private final int commitBytes;
+    private final long commitIntervalMillis;
+    private final Map<Path, GroupCommitWriter> writers = new ConcurrentHashMap<>();
+
+    public OutputWriterManager(
+            CamelContext camelContext,
+            @Value("${transformation.output.compression:none}") String compression,
+            @Value("${transformation.output.group-commit.bytes:1048576}") Integer commitBytes,
+            @Value("${transformation.output.group-commit.interval-ms:1000}") Long commitIntervalMillis) {
+        this.camelContext = camelContext;
+        this.compression = CompressionUtil.normalize(compression);
+        this.commitBytes = commitBytes;
+        this.commitIntervalMillis = commitIntervalMillis;
+    }
+
+    /**
+     * Arranca el commit periódico de los writers con líneas pendientes, si hay intervalo configurado
+     */
+    @PostConstruct
+    public void startCommitter() {
+        if (commitIntervalMillis <= 0) {
+            return;
+        }
+
+        ScheduledExecutorService flusher = camelContext.getExecutorServiceManager()
+                .newSingleThreadScheduledExecutor(this, "OutputGroupCommit");
+        flusher.scheduleWithFixedDelay(this::commitDueWriters, commitIntervalMillis, commitIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * Devuelve el writer abierto del archivo o abre uno nuevo en modo append
+     */
+    public GroupCommitWriter open(String filePath) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        try {
+            return writers.computeIfAbsent(path, key -> {
+                try {
+                    return new GroupCommitWriter(key, compression, commitBytes, commitIntervalMillis);
+                } catch (IOException e) {
+                    throw new RuntimeException("Error al abrir el archivo de salida " + key, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cierra el writer: escribe lo pendiente y fuerza el archivo a disco
+     */
+    public void close(GroupCommitWriter writer) throws IOException {
+        writers.remove(writer.getPath(), writer);
+        writer.close();
+    }
+
+    private void commitDueWriters() {
+        writers.values().forEach(writer -> {
+            try {
+                writer.commitIfDue();
+            } catch (IOException e) {
+                log.error("Error en el commit agrupado de {}", writer.getPath(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        writers.values().forEach(writer -> {
+            try {
+                close(writer);
+            } catch (IOException e) {
+                log.error("Error al cerrar el archivo de salida {}", writer.getPath(), e);
+            }
+        });
+    }
+}
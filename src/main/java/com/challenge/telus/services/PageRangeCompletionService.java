@@ -0,0 +1,297 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.PageRangeCompletion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Vista en memoria del topic de completitud de la extracción distribuida
+ * Cada instancia relee el topic completo al arrancar, por lo que el progreso de una corrida
+ * (qué rangos faltan) sobrevive a reinicios y puede consultarse desde cualquier nodo.
+ * La vista está lista recién cuando el consumidor alcanzó los offsets finales que tenía el
+ * topic al arrancar; antes de eso no se debe planificar ni reanudar una corrida.
+ */
+@Slf4j
+@Service
+public class PageRangeCompletionService {
+
+    private final Map<String, RunProgress> runs = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Integer, Long> consumedOffsets = new HashMap<>();
+    private Map<Integer, Long> catchUpOffsets;
+    private boolean ready;
+
+    /**
+     * Registra un plan o un rango completado leído del topic
+     */
+    public void record(PageRangeCompletion record) {
+        if (record == null || record.getRunId() == null || record.getType() == null) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            RunProgress run = runs.computeIfAbsent(record.getRunId(), id -> new RunProgress());
+            if (record.getType() == PageRangeCompletion.Type.PLANNED) {
+                run.plan = record;
+            } else if (record.getRangeIndex() == null) {
+                return;
+            } else if (record.getType() == PageRangeCompletion.Type.FAILED) {
+                // Un rango fallido deja de contar como fallido si luego se completa
+                if (!run.completed.containsKey(record.getRangeIndex())) {
+                    run.failed.put(record.getRangeIndex(), record);
+                }
+            } else {
+                // Un rango puede completarse dos veces si se reprocesa: vale el primer registro
+                run.completed.putIfAbsent(record.getRangeIndex(), record);
+                run.failed.remove(record.getRangeIndex());
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registra el offset de un registro leído del topic (también si no se pudo interpretar)
+     */
+    public void recordOffset(int partition, long offset) {
+        lock.lock();
+        try {
+            consumedOffsets.merge(partition, offset, Math::max);
+            updateReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean hasCatchUpOffsets() {
+        lock.lock();
+        try {
+            return catchUpOffsets != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fija los offsets finales (por partición) que el consumidor debe alcanzar para estar listo
+     */
+    public void setCatchUpOffsets(Map<Integer, Long> endOffsets) {
+        lock.lock();
+        try {
+            if (catchUpOffsets != null) {
+                return;
+            }
+            catchUpOffsets = Map.copyOf(endOffsets);
+            log.info("Topic de completitud: se espera leer hasta los offsets {}", catchUpOffsets);
+            updateReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isReady() {
+        lock.lock();
+        try {
+            return ready;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Espera a que el topic de completitud se haya leído hasta los offsets finales del arranque
+     * @return true si la vista quedó lista antes del timeout
+     */
+    public boolean awaitReady(long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (!ready) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isRangeCompleted(String runId, int rangeIndex) {
+        lock.lock();
+        try {
+            RunProgress run = runs.get(runId);
+            return run != null && run.completed.containsKey(rangeIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isRunComplete(String runId) {
+        lock.lock();
+        try {
+            RunProgress run = runs.get(runId);
+            return run != null && run.isComplete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Plan de la corrida más reciente que todavía tiene rangos pendientes
+     */
+    public Optional<PageRangeCompletion> findResumableRun() {
+        lock.lock();
+        try {
+            return runs.values().stream()
+                    .filter(run -> run.plan != null && !run.isComplete())
+                    .map(run -> run.plan)
+                    .max(Comparator.comparing(PageRangeCompletion::getTimestamp,
+                            Comparator.nullsFirst(Comparator.naturalOrder())));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Índices de los rangos de una corrida que todavía no tienen registro de completitud
+     */
+    public List<Integer> getMissingRanges(String runId) {
+        lock.lock();
+        try {
+            List<Integer> missing = new ArrayList<>();
+            RunProgress run = runs.get(runId);
+            if (run == null || run.plan == null) {
+                return missing;
+            }
+            for (int index = 0; index < run.plan.getRangeCount(); index++) {
+                if (!run.completed.containsKey(index)) {
+                    missing.add(index);
+                }
+            }
+            return missing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Índices de los rangos de una corrida que agotaron sus intentos y no se completaron
+     */
+    public List<Integer> getFailedRanges(String runId) {
+        lock.lock();
+        try {
+            RunProgress run = runs.get(runId);
+            return run == null ? new ArrayList<>() : new ArrayList<>(run.failed.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Olvida los fallos de los rangos que se vuelven a publicar, para esperarlos de nuevo
+     */
+    public void retryRanges(String runId, List<Integer> rangeIndexes) {
+        lock.lock();
+        try {
+            RunProgress run = runs.get(runId);
+            if (run != null) {
+                rangeIndexes.forEach(run.failed::remove);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Espera a que todos los rangos de la corrida estén completos o hayan fallado
+     * @return true si la corrida se completó (sin rangos fallidos) antes del timeout
+     */
+    public boolean awaitRun(String runId, long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (!isRunSettled(runId)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            return isRunComplete(runId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Progreso de una corrida a partir de sus registros de completitud
+     */
+    public Map<String, Object> getProgress(String runId) {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            RunProgress run = runs.get(runId);
+            if (run == null || run.plan == null) {
+                return progress;
+            }
+            int records = run.completed.values().stream()
+                    .mapToInt(record -> record.getRecords() != null ? record.getRecords() : 0)
+                    .sum();
+            progress.put("runId", runId);
+            progress.put("rangeCount", run.plan.getRangeCount());
+            progress.put("rangesCompleted", run.completed.size());
+            progress.put("rangesFailed", run.failed.size());
+            progress.put("recordsProcessed", records);
+            progress.put("totalRecords", run.plan.getTotalRecords());
+            progress.put("completed", run.isComplete());
+            return progress;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateReady() {
+        if (ready || catchUpOffsets == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Long> endOffset : catchUpOffsets.entrySet()) {
+            // El offset final es el del próximo registro: se alcanzó al leer el anterior
+            if (consumedOffsets.getOrDefault(endOffset.getKey(), -1L) + 1 < endOffset.getValue()) {
+                return;
+            }
+        }
+        ready = true;
+        log.info("Topic de completitud leído hasta el final del arranque: {} corridas conocidas", runs.size());
+        changed.signalAll();
+    }
+
+    private boolean isRunSettled(String runId) {
+        RunProgress run = runs.get(runId);
+        return run != null && run.plan != null && run.completed.size() + run.failed.size() >= run.plan.getRangeCount();
+    }
+
+    private static class RunProgress {
+        private PageRangeCompletion plan;
+        private final Map<Integer, PageRangeCompletion> completed = new HashMap<>();
+        private final Map<Integer, PageRangeCompletion> failed = new HashMap<>();
+
+        private boolean isComplete() {
+            return plan != null && completed.size() >= plan.getRangeCount();
+        }
+    }
+}
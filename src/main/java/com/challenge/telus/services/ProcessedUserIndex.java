@@ -0,0 +1,494 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.utils.CompressionUtil;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Índice persistente de ids de usuarios ya transformados, para descartar duplicados entre
+ * archivos y entre ejecuciones
+ * Un Bloom filter en memoria (tamaño fijo según los ids esperados) responde la mayoría de
+ * las consultas de ids nuevos; los positivos se confirman contra una tabla hash de ids en
+ * disco (direccionamiento abierto, mapeada en memoria), así el heap no crece con los ids.
+ * Los ids se reservan al leer la línea y se confirman todos juntos recién cuando los archivos
+ * de salida del archivo de entrada se cerraron bien (la salida ya es durable); los inválidos
+ * y los de un archivo que falló liberan la reserva. Si la tabla no existe o está dañada se
+ * reconstruye leyendo los ids de processed_users/; el Bloom filter se reconstruye desde la tabla.
+ * Solo compara ids: una versión nueva de un usuario ya procesado (por ejemplo la que trae una
+ * extracción delta porque cambió) se trata como duplicada, por eso viene desactivado.
+ */
+@Slf4j
+@Service
+public class ProcessedUserIndex {
+
+    private static final int TABLE_MAGIC = 0x55494458;
+    private static final int BLOOM_MAGIC = 0x55424C4D;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int COUNT_OFFSET = 16;
+    private static final double MAX_LOAD = 0.7;
+    private static final long MAX_CAPACITY = 1L << 27;
+
+    private final boolean enabled;
+    private final Path tablePath;
+    private final Path bloomPath;
+    private final Path processedDirectory;
+    private final long expectedIds;
+    private final double falsePositiveRate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Long> inFlight = new HashSet<>();
+
+    private FileChannel tableChannel;
+    private MappedByteBuffer table;
+    private long capacity;
+    private long count;
+    private long[] bloomBits;
+    private long bloomBitCount;
+    private int bloomHashes;
+    private long bloomCapacity;
+    private boolean dirty;
+
+    public ProcessedUserIndex(
+            @Value("${transformation.dedupe.enabled:false}") Boolean enabled,
+            @Value("${extractor.state.directory:state}") String stateDirectory,
+            @Value("${transformation.dedupe.index-file:processed_user_ids.idx}") String tableFileName,
+            @Value("${transformation.dedupe.bloom-file:processed_user_ids.bloom}") String bloomFileName,
+            @Value("${transformation.output.processed-directory:processed_users}") String processedDirectory,
+            @Value("${transformation.dedupe.expected-ids:1000000}") Long expectedIds,
+            @Value("${transformation.dedupe.false-positive-rate:0.01}") Double falsePositiveRate) {
+        this.enabled = enabled;
+        this.tablePath = Paths.get(stateDirectory, tableFileName);
+        this.bloomPath = Paths.get(stateDirectory, bloomFileName);
+        this.processedDirectory = Paths.get(processedDirectory);
+        this.expectedIds = Math.max(1024, expectedIds);
+        this.falsePositiveRate = falsePositiveRate;
+
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(tablePath.toAbsolutePath().getParent());
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Error al abrir el índice de usuarios procesados", e);
+        }
+        log.info("Índice de usuarios procesados: {} ids (tabla de {} posiciones, Bloom filter de {} bits)",
+                count, capacity, bloomBitCount);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserva el id para la línea actual; devuelve false si ya fue procesado o lo está
+     * procesando otra línea (duplicado). Los ids no positivos no se indexan.
+     */
+    public boolean claim(long id) {
+        if (!enabled || id <= 0) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (inFlight.contains(id) || (bloomMightContain(id) && tableContains(id))) {
+                return false;
+            }
+            inFlight.add(id);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Confirma los ids reservados de un archivo de entrada cuya salida ya se cerró y forzó a
+     * disco, y persiste la tabla y el Bloom filter
+     */
+    public void commitAll(long[] ids) throws IOException {
+        if (!enabled || ids.length == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (long id : ids) {
+                if (inFlight.remove(id)) {
+                    tableInsert(id);
+                    bloomAdd(id);
+                    dirty = true;
+                }
+            }
+            flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera un id reservado sin registrarlo (el usuario no llegó a processed)
+     */
+    public void release(long id) {
+        if (!enabled || id <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera los ids reservados de un archivo de entrada que falló: se podrán volver a procesar
+     */
+    public void releaseAll(long[] ids) {
+        if (!enabled || ids.length == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (long id : ids) {
+                inFlight.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fuerza la tabla a disco y guarda el Bloom filter si hubo cambios
+     */
+    public void flush() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            table.force();
+            writeBloom();
+            dirty = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            flush();
+            tableChannel.close();
+        } catch (IOException e) {
+            log.error("Error al cerrar el índice de usuarios procesados", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        if (!Files.exists(tablePath) || !mapTable(tablePath)) {
+            rebuildFromProcessed();
+        }
+        if (!readBloom()) {
+            rebuildBloom(Math.max(expectedIds, count * 2));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Tabla de ids en disco: encabezado (magic, versión, capacidad, cantidad) y posiciones de
+    // 8 bytes con el id (0 = libre), sondeo lineal
+    // ---------------------------------------------------------------------------------------
+
+    private boolean mapTable(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.close();
+            log.warn("Tabla de ids inválida, se reconstruye desde {}", processedDirectory);
+            return false;
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        long mappedCapacity = mapped.getLong(8);
+        if (mapped.getInt(0) != TABLE_MAGIC || mapped.getInt(4) != VERSION
+                || size != HEADER_SIZE + mappedCapacity * Long.BYTES) {
+            channel.close();
+            log.warn("Tabla de ids inválida, se reconstruye desde {}", processedDirectory);
+            return false;
+        }
+
+        if (tableChannel != null) {
+            tableChannel.close();
+        }
+        tableChannel = channel;
+        table = mapped;
+        capacity = mappedCapacity;
+        count = mapped.getLong(COUNT_OFFSET);
+        return true;
+    }
+
+    private void createTable(Path path, long newCapacity) throws IOException {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IOException("La tabla de ids superaría el máximo de " + MAX_CAPACITY + " posiciones");
+        }
+        Files.deleteIfExists(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + newCapacity * Long.BYTES);
+            mapped.putInt(0, TABLE_MAGIC);
+            mapped.putInt(4, VERSION);
+            mapped.putLong(8, newCapacity);
+            mapped.putLong(COUNT_OFFSET, 0);
+            mapped.force();
+        }
+    }
+
+    private boolean tableContains(long id) {
+        long mask = capacity - 1;
+        for (long slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+            long stored = table.getLong(HEADER_SIZE + (int) slot * Long.BYTES);
+            if (stored == 0) {
+                return false;
+            }
+            if (stored == id) {
+                return true;
+            }
+        }
+    }
+
+    private void tableInsert(long id) throws IOException {
+        if (count + 1 > capacity * MAX_LOAD) {
+            growTable();
+        }
+        long mask = capacity - 1;
+        for (long slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+            int position = HEADER_SIZE + (int) slot * Long.BYTES;
+            long stored = table.getLong(position);
+            if (stored == id) {
+                return;
+            }
+            if (stored == 0) {
+                table.putLong(position, id);
+                table.putLong(COUNT_OFFSET, ++count);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Duplica la capacidad de la tabla: escribe una nueva en un temporal y la reemplaza con un rename atómico
+     */
+    private void growTable() throws IOException {
+        long newCapacity = capacity * 2;
+        Path tempPath = tablePath.resolveSibling(tablePath.getFileName() + ".tmp");
+        createTable(tempPath, newCapacity);
+
+        MappedByteBuffer oldTable = table;
+        long oldCapacity = capacity;
+        if (!mapTable(tempPath)) {
+            throw new IOException("No se pudo mapear la nueva tabla de ids " + tempPath);
+        }
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long stored = oldTable.getLong(HEADER_SIZE + (int) slot * Long.BYTES);
+            if (stored != 0) {
+                tableInsert(stored);
+            }
+        }
+        table.force();
+        Files.move(tempPath, tablePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Tabla de ids ampliada a {} posiciones ({} ids)", capacity, count);
+    }
+
+    /**
+     * Reconstruye la tabla con los ids de los archivos de processed_users/
+     */
+    private void rebuildFromProcessed() throws IOException {
+        createTable(tablePath, tableCapacityFor(expectedIds));
+        if (!mapTable(tablePath)) {
+            throw new IOException("No se pudo mapear la tabla de ids " + tablePath);
+        }
+
+        if (Files.isDirectory(processedDirectory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(processedDirectory, "*.{jsonl,jsonl.gz}")) {
+                for (Path file : files) {
+                    readProcessedIds(file);
+                }
+            }
+        }
+        table.force();
+        log.info("Índice de usuarios procesados reconstruido desde {}: {} ids", processedDirectory, count);
+    }
+
+    private void readProcessedIds(Path file) {
+        long before = count;
+        try (InputStream in = CompressionUtil.openForRead(file.toFile());
+             JsonParser parser = jsonFactory.createParser(in)) {
+            // Un valor raíz por línea; solo interesa el campo "id" de primer nivel
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("id".equals(fieldName) && value == JsonToken.VALUE_NUMBER_INT && parser.getLongValue() > 0) {
+                        tableInsert(parser.getLongValue());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Un archivo gzip sin trailer (proceso cortado) se lee hasta donde llega
+            log.warn("Lectura parcial de {} al reconstruir el índice: {}", file, e.getMessage());
+        }
+        log.debug("Ids leídos de {}: {}", file, count - before);
+    }
+
+    private long tableCapacityFor(long ids) {
+        long needed = (long) Math.ceil(ids / MAX_LOAD);
+        return Math.min(MAX_CAPACITY, Long.highestOneBit(Math.max(1024, needed - 1)) << 1);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Bloom filter: k posiciones por id a partir de dos hashes (h1 + i * h2)
+    // ---------------------------------------------------------------------------------------
+
+    private boolean bloomMightContain(long id) {
+        long hash = mix(id);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bloomBitCount);
+            if ((bloomBits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void bloomAdd(long id) {
+        if (count > bloomCapacity) {
+            // Pasada la capacidad la tasa de falsos positivos crece: se rehace con el doble
+            rebuildBloom(bloomCapacity * 2);
+            return;
+        }
+        setBloomBits(id);
+    }
+
+    private void setBloomBits(long id) {
+        long hash = mix(id);
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bloomBitCount);
+            bloomBits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private void rebuildBloom(long capacityIds) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-capacityIds * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bloomBits = new long[(int) ((bits + 63) / 64)];
+        bloomBitCount = bloomBits.length * 64L;
+        bloomHashes = Math.max(1, (int) Math.round((double) bloomBitCount / capacityIds * ln2));
+        bloomCapacity = capacityIds;
+
+        for (long slot = 0; slot < capacity; slot++) {
+            long stored = table.getLong(HEADER_SIZE + (int) slot * Long.BYTES);
+            if (stored != 0) {
+                setBloomBits(stored);
+            }
+        }
+        dirty = true;
+        log.info("Bloom filter de usuarios procesados reconstruido: {} ids, {} bits, {} hashes", count,
+                bloomBitCount, bloomHashes);
+    }
+
+    /**
+     * Lee el Bloom filter guardado; se descarta si no corresponde a la cantidad de ids de la tabla
+     */
+    private boolean readBloom() {
+        if (!Files.exists(bloomPath)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(bloomPath))) {
+            if (in.readInt() != BLOOM_MAGIC || in.readInt() != VERSION || in.readLong() != count) {
+                log.warn("Bloom filter desactualizado, se reconstruye desde la tabla de ids");
+                return false;
+            }
+            long savedCapacity = in.readLong();
+            int hashes = in.readInt();
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            bloomCapacity = savedCapacity;
+            bloomHashes = hashes;
+            bloomBits = bits;
+            bloomBitCount = bits.length * 64L;
+            return true;
+        } catch (IOException e) {
+            log.warn("Error al leer el Bloom filter, se reconstruye desde la tabla de ids", e);
+            return false;
+        }
+    }
+
+    private void writeBloom() throws IOException {
+        Path tempPath = bloomPath.resolveSibling(bloomPath.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tempPath);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.writeInt(BLOOM_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(count);
+            out.writeLong(bloomCapacity);
+            out.writeInt(bloomHashes);
+            out.writeInt(bloomBits.length);
+            for (long word : bloomBits) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(tempPath, bloomPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Mezcla de 64 bits (finalizador de MurmurHash3) para repartir ids consecutivos
+     */
+    private static long mix(long id) {
+        long hash = id;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
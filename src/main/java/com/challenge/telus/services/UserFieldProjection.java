@@ -0,0 +1,101 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Proyección de campos de usuario pedida a la API (parámetro "select")
+ * Sin lista explícita se deriva de los modelos: todos los campos que mapea User (los que
+ * terminan en raw_users, en la DLQ y en originalUser) más los que valida el schema
+ * configurado de UserValidationEngine (sus propiedades tienen que existir en User, así que
+ * una recarga del schema no agrega campos). El mismo conjunto se usa en el parseo streaming
+ * para descartar sin copiar los subárboles de campos no proyectados.
+ * Viene desactivada: con una lista explícita reducida los campos que faltan desaparecen de
+ * los archivos raw y cambian las huellas de la extracción delta.
+ */
+@Slf4j
+@Service
+public class UserFieldProjection {
+
+    private final boolean enabled;
+    private final Set<String> fields;
+    private final String selectParameter;
+
+    public UserFieldProjection(
+            ObjectMapper objectMapper,
+            UserValidationEngine validationEngine,
+            @Value("${extractor.projection.enabled:false}") Boolean enabled,
+            @Value("${extractor.projection.fields:}") List<String> configuredFields) {
+        this.enabled = enabled;
+        this.fields = Collections.unmodifiableSet(resolveFields(objectMapper, validationEngine, configuredFields));
+        this.selectParameter = String.join(",", fields);
+
+        if (enabled) {
+            log.info("Proyección de campos de usuario habilitada: {}", selectParameter);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Verifica si un campo de primer nivel del usuario debe conservarse
+     */
+    public boolean includes(String fieldName) {
+        return !enabled || fields.contains(fieldName);
+    }
+
+    /**
+     * Parámetros a agregar a la URL de la página ("&select=..."), vacío si la proyección está deshabilitada
+     */
+    public String getQueryParameters() {
+        return enabled ? "&select=" + selectParameter : "";
+    }
+
+    private Set<String> resolveFields(ObjectMapper objectMapper, UserValidationEngine validationEngine,
+                                      List<String> configuredFields) {
+        Set<String> resolved = new LinkedHashSet<>();
+        resolved.add("id");
+
+        List<String> explicitFields = configuredFields == null ? List.of() : configuredFields.stream()
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .toList();
+        if (!explicitFields.isEmpty()) {
+            resolved.addAll(explicitFields);
+            return resolved;
+        }
+
+        // Todos los campos que mapea User, no solo los que se copian a ValidatedUser
+        resolved.addAll(propertyNames(objectMapper, User.class));
+
+        // Campos que valida el schema
+        resolved.addAll(validationEngine.getSchemaFields());
+
+        return resolved;
+    }
+
+    private Set<String> propertyNames(ObjectMapper objectMapper, Class<?> type) {
+        return objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(type))
+                .findProperties()
+                .stream()
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
@@ -0,0 +1,219 @@
+package com.challenge.telus.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Índice persistente de huellas de contenido por usuario (id → hash) para la extracción delta
+ * En disco es un log append-only de registros fijos de 16 bytes (id, hash); al cargar, el
+ * último registro de cada id gana. Cuando el log crece demasiado respecto del índice se
+ * compacta escribiendo un temporal y reemplazándolo con un rename atómico.
+ */
+@Slf4j
+@Service
+public class UserFingerprintIndex {
+
+    private static final int RECORD_SIZE = 16;
+
+    private final Path indexPath;
+    private final Map<Long, Long> fingerprints = new ConcurrentHashMap<>();
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(UserFingerprintIndex::newDigest);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    private long logRecords;
+
+    public UserFingerprintIndex(
+            @Value("${extractor.state.directory:state}") String stateDirectory,
+            @Value("${extractor.delta.index-file:user_fingerprints.idx}") String indexFileName) {
+        this.indexPath = Paths.get(stateDirectory, indexFileName);
+
+        // Cargar el índice existente
+        load();
+    }
+
+    /**
+     * Calcula la huella de contenido de un usuario (primeros 8 bytes de SHA-256)
+     */
+    public long fingerprint(byte[] content, int offset, int length) {
+        MessageDigest sha = digest.get();
+        sha.update(content, offset, length);
+        return ByteBuffer.wrap(sha.digest()).getLong();
+    }
+
+    /**
+     * Indica si el usuario es nuevo o cambió respecto de la última extracción registrada
+     */
+    public boolean isChanged(long userId, long fingerprint) {
+        Long previous = fingerprints.get(userId);
+        return previous == null || previous != fingerprint;
+    }
+
+    /**
+     * Registra las huellas de una página ya confirmada en el checkpoint
+     */
+    public void commit(Map<Long, Long> pageFingerprints) {
+        lock.lock();
+        try {
+            if (pageFingerprints == null || pageFingerprints.isEmpty()) {
+                return;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(pageFingerprints.size() * RECORD_SIZE);
+                pageFingerprints.forEach((id, hash) -> buffer.putLong(id).putLong(hash));
+                buffer.flip();
+
+                FileChannel out = getChannel();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+
+                fingerprints.putAll(pageFingerprints);
+                logRecords += pageFingerprints.size();
+
+                if (logRecords > 2L * fingerprints.size() + 10_000) {
+                    compact();
+                }
+            } catch (IOException e) {
+                log.error("Error al registrar huellas de usuarios", e);
+                throw new RuntimeException("No se pudo actualizar el índice de huellas de usuarios", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("Error al cerrar el índice de huellas de usuarios", e);
+            } finally {
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reescribe el log con una entrada por usuario
+     */
+    private void compact() throws IOException {
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (Map.Entry<Long, Long> entry : fingerprints.entrySet()) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        temp.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.putLong(entry.getKey()).putLong(entry.getValue());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                temp.write(buffer);
+            }
+            temp.force(true);
+        }
+
+        close();
+        Files.move(tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logRecords = fingerprints.size();
+
+        log.info("Índice de huellas compactado: {} usuarios", fingerprints.size());
+    }
+
+    /**
+     * Carga el log en memoria; un registro final incompleto (escritura cortada) se descarta
+     */
+    private void load() {
+        try {
+            Files.createDirectories(indexPath.getParent());
+            if (!Files.exists(indexPath)) {
+                log.info("No existe índice de huellas de usuarios, se creará uno nuevo");
+                return;
+            }
+
+            try (FileChannel in = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                long position = 0;
+                while (position < size) {
+                    buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + (size - position)));
+                    int read = in.read(buffer, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    position += read;
+                    buffer.flip();
+                    while (buffer.remaining() >= RECORD_SIZE) {
+                        fingerprints.put(buffer.getLong(), buffer.getLong());
+                        logRecords++;
+                    }
+                    // Una lectura corta puede cortar un registro: los bytes sobrantes pasan a la próxima
+                    buffer.compact();
+                }
+                long validLength = logRecords * RECORD_SIZE;
+                if (validLength < size) {
+                    log.warn("Registro incompleto al final del índice de huellas, se descartan {} bytes",
+                            size - validLength);
+                    in.truncate(validLength);
+                }
+            }
+
+            log.info("Índice de huellas cargado: {} usuarios ({} registros)", fingerprints.size(), logRecords);
+        } catch (IOException e) {
+            log.error("Error al cargar el índice de huellas de usuarios", e);
+            throw new RuntimeException("No se pudo cargar el índice de huellas de usuarios", e);
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(indexPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
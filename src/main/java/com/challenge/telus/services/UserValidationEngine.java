@@ -0,0 +1,410 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.RuleEvaluation;
+import com.challenge.telus.models.User;
+import com.challenge.telus.models.ValidationBatchResult;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.CamelContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Motor de validación de usuarios compilado desde el schema JSON
+ * Al arrancar (y en cada recarga) el schema se compila a un plan de reglas: accesores por
+ * propiedad, patrones precompilados y, dentro de cada campo, las verificaciones ordenadas de
+ * la más barata a la más cara, cortando en la primera que falla. Cada regla tiene un bit: la
+ * evaluación devuelve la máscara de reglas fallidas (0 si el usuario es válido) sin armar
+ * listas, y los mensajes se generan solo para las máscaras distintas de cero.
+ * Para bloques de registros las reglas se evalúan por columnas: cada regla recorre todas las
+ * filas del bloque antes de pasar a la siguiente.
+ * Los mensajes salen de "x-messages" de cada propiedad o, si no están, de plantillas genéricas.
+ * El plan se reemplaza de forma atómica; si el schema nuevo no compila se conserva el anterior.
+ */
+@Slf4j
+@Service
+public class UserValidationEngine {
+
+    private static final int MAX_RULES = Long.SIZE;
+    private static final Map<String, Pattern> FORMATS = Map.of(
+            "email", Pattern.compile("^[A-Za-z0-9+_.-]+@([A-Za-z0-9.-]+\\.[A-Za-z]{2,})$"));
+
+    private final CamelContext camelContext;
+    private final ObjectMapper objectMapper;
+    private final Resource schemaResource;
+    private final long reloadIntervalMillis;
+    private final AtomicReference<ValidationPlan> plan = new AtomicReference<>();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private long schemaLastModified;
+
+    public UserValidationEngine(
+            CamelContext camelContext,
+            @Value("${transformation.validation.schema-file:classpath:schemas/user-validation-schema.json}") Resource schemaResource,
+            @Value("${transformation.validation.reload-interval-ms:30000}") Long reloadIntervalMillis) {
+        this.camelContext = camelContext;
+        this.objectMapper = new ObjectMapper();
+        this.schemaResource = schemaResource;
+        this.reloadIntervalMillis = reloadIntervalMillis != null ? reloadIntervalMillis : 0;
+
+        this.schemaLastModified = lastModified();
+        this.plan.set(compile());
+        log.info("Schema de validación compilado: {} reglas", plan.get().messages().length);
+    }
+
+    /**
+     * Arranca la verificación periódica del schema, si hay intervalo configurado
+     */
+    @PostConstruct
+    public void startReloader() {
+        if (reloadIntervalMillis <= 0) {
+            return;
+        }
+
+        ScheduledExecutorService reloader = camelContext.getExecutorServiceManager()
+                .newSingleThreadScheduledExecutor(this, "ValidationSchemaReload");
+        reloader.scheduleWithFixedDelay(this::reloadIfModified, reloadIntervalMillis, reloadIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evalúa el usuario; el resultado lleva la máscara de reglas fallidas (0 si es válido) y
+     * los mensajes del plan que la calculó
+     */
+    public RuleEvaluation evaluate(User user) {
+        ValidationPlan current = plan.get();
+        return new RuleEvaluation(current.evaluate(user), current.messages());
+    }
+
+    /**
+     * Evalúa un bloque de usuarios por columnas; el resultado queda en arreglos primitivos
+     * (bitset de filas válidas y máscara de reglas fallidas por fila)
+     */
+    public ValidationBatchResult evaluateBatch(User[] users, int count) {
+        ValidationPlan current = plan.get();
+        long[] failedRules = new long[count];
+        ValidationPlan.evaluateColumns(current.rules(), users, count, failedRules);
+        return new ValidationBatchResult(failedRules, count, current.messages());
+    }
+
+    /**
+     * Filtro de tokens con los campos que declara el schema (anidados incluidos)
+     * Permite bindear solo lo que la validación necesita y saltar el resto de la línea
+     */
+    public TokenFilter getFieldsFilter() {
+        return plan.get().fieldsFilter();
+    }
+
+    /**
+     * Propiedades de primer nivel que declara el schema vigente
+     */
+    public Set<String> getSchemaFields() {
+        return plan.get().schemaFields();
+    }
+
+    /**
+     * Recompila el schema y reemplaza el plan; si falla se conserva el plan vigente
+     */
+    public boolean reload() {
+        reloadLock.lock();
+        try {
+            ValidationPlan compiled = compile();
+            plan.set(compiled);
+            schemaLastModified = lastModified();
+            log.info("Schema de validación recargado: {} reglas", compiled.messages().length);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Error al recargar el schema de validación, se conserva el plan vigente", e);
+            return false;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reloadIfModified() {
+        long modified = lastModified();
+        if (modified > 0 && modified != schemaLastModified) {
+            // Un schema inválido se reintenta recién cuando vuelve a cambiar
+            schemaLastModified = modified;
+            reload();
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return schemaResource.lastModified();
+        } catch (IOException e) {
+            // Recursos empaquetados en el jar: no se pueden recargar por fecha
+            return 0;
+        }
+    }
+
+    private ValidationPlan compile() {
+        JsonNode schema;
+        try (InputStream inputStream = schemaResource.getInputStream()) {
+            schema = objectMapper.readTree(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer el schema de validación", e);
+        }
+
+        List<String> messages = new ArrayList<>();
+        FieldRule[] rules = compileProperties(schema, User.class, "", messages);
+        Set<String> schemaFields = new LinkedHashSet<>();
+        schema.path("properties").fieldNames().forEachRemaining(schemaFields::add);
+        return new ValidationPlan(rules, messages.toArray(String[]::new), new SchemaFieldsFilter(schema),
+                Collections.unmodifiableSet(schemaFields));
+    }
+
+    private FieldRule[] compileProperties(JsonNode schema, Class<?> type, String pathPrefix, List<String> messages) {
+        Map<String, AnnotatedMember> accessors = new HashMap<>();
+        for (BeanPropertyDefinition property : objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(type)).findProperties()) {
+            if (property.getAccessor() != null) {
+                accessors.put(property.getName(), property.getAccessor());
+            }
+        }
+
+        List<String> required = new ArrayList<>();
+        schema.path("required").forEach(name -> required.add(name.asText()));
+
+        List<FieldRule> rules = new ArrayList<>();
+        schema.path("properties").properties().forEach(entry -> {
+            String name = entry.getKey();
+            String path = pathPrefix + name;
+            AnnotatedMember accessor = accessors.get(name);
+            if (accessor == null) {
+                throw new RuntimeException("La propiedad " + path + " del schema no existe en " + type.getSimpleName());
+            }
+            rules.add(compileField(entry.getValue(), path, accessor, required.contains(name), messages));
+        });
+        return rules.toArray(FieldRule[]::new);
+    }
+
+    private FieldRule compileField(JsonNode property, String path, AnnotatedMember accessor, boolean required,
+                                   List<String> messages) {
+        JsonNode customMessages = property.path("x-messages");
+        String type = property.path("type").asText(null);
+
+        FieldRule rule = new FieldRule(accessor);
+        if (required) {
+            rule.requiredBit = addRule(messages, customMessages, "required", path + " es requerido");
+        }
+        if (type != null && !"object".equals(type)) {
+            rule.expectedType = switch (type) {
+                case "integer", "number" -> Number.class;
+                case "string" -> CharSequence.class;
+                case "boolean" -> Boolean.class;
+                default -> throw new RuntimeException("Tipo no soportado en el schema para " + path + ": " + type);
+            };
+            rule.integral = "integer".equals(type);
+            rule.typeBit = addRule(messages, customMessages, "type", path + " debe ser de tipo " + type);
+        }
+        if (property.has("minimum")) {
+            rule.minimum = property.get("minimum").asDouble();
+            rule.minimumBit = addRule(messages, customMessages, "minimum",
+                    path + " debe ser mayor o igual a " + property.get("minimum").asText());
+        }
+        if (property.has("maximum")) {
+            rule.maximum = property.get("maximum").asDouble();
+            rule.maximumBit = addRule(messages, customMessages, "maximum",
+                    path + " debe ser menor o igual a " + property.get("maximum").asText());
+        }
+        if (property.has("minLength")) {
+            rule.minLength = property.get("minLength").asInt();
+            rule.minLengthBit = addRule(messages, customMessages, "minLength",
+                    path + " debe tener al menos " + rule.minLength + " caracteres");
+        }
+        if (property.has("maxLength")) {
+            rule.maxLength = property.get("maxLength").asInt();
+            rule.maxLengthBit = addRule(messages, customMessages, "maxLength",
+                    path + " debe tener como máximo " + rule.maxLength + " caracteres");
+        }
+        if (property.has("format")) {
+            String format = property.get("format").asText();
+            rule.pattern = FORMATS.get(format);
+            if (rule.pattern == null) {
+                throw new RuntimeException("Formato no soportado en el schema para " + path + ": " + format);
+            }
+            rule.patternBit = addRule(messages, customMessages, "format", path + " debe tener formato " + format);
+        } else if (property.has("pattern")) {
+            rule.pattern = Pattern.compile(property.get("pattern").asText());
+            rule.patternBit = addRule(messages, customMessages, "pattern",
+                    path + " no cumple el patrón " + rule.pattern.pattern());
+        }
+        if (property.path("properties").isObject()) {
+            rule.nested = compileProperties(property, accessor.getRawType(), path + ".", messages);
+        }
+        return rule;
+    }
+
+    private long addRule(List<String> messages, JsonNode customMessages, String keyword, String defaultMessage) {
+        if (messages.size() >= MAX_RULES) {
+            throw new RuntimeException("El schema de validación supera las " + MAX_RULES + " reglas soportadas");
+        }
+        messages.add(customMessages.path(keyword).asText(defaultMessage));
+        return 1L << (messages.size() - 1);
+    }
+
+    /**
+     * Plan compilado: reglas por campo, mensajes indexados por bit, filtro de campos del schema
+     * y sus propiedades de primer nivel
+     */
+    private record ValidationPlan(FieldRule[] rules, String[] messages, TokenFilter fieldsFilter,
+                                  Set<String> schemaFields) {
+
+        long evaluate(Object bean) {
+            return evaluateAll(rules, bean);
+        }
+
+        private static long evaluateAll(FieldRule[] rules, Object bean) {
+            long failed = 0;
+            for (FieldRule rule : rules) {
+                failed |= rule.evaluate(bean);
+            }
+            return failed;
+        }
+
+        private static void evaluateColumns(FieldRule[] rules, Object[] beans, int count, long[] failed) {
+            for (FieldRule rule : rules) {
+                rule.evaluateColumn(beans, count, failed);
+            }
+        }
+    }
+
+    /**
+     * Reglas de una propiedad, evaluadas en orden y cortando en la primera que falla
+     * Los strings en blanco cuentan como ausentes para required y se miden sin espacios
+     * para minLength, igual que las validaciones escritas a mano que reemplaza este motor
+     */
+    private static final class FieldRule {
+
+        private final AnnotatedMember accessor;
+        private long requiredBit;
+        private Class<?> expectedType;
+        private boolean integral;
+        private long typeBit;
+        private Double minimum;
+        private long minimumBit;
+        private Double maximum;
+        private long maximumBit;
+        private Integer minLength;
+        private long minLengthBit;
+        private Integer maxLength;
+        private long maxLengthBit;
+        private Pattern pattern;
+        private long patternBit;
+        private FieldRule[] nested;
+
+        FieldRule(AnnotatedMember accessor) {
+            this.accessor = accessor;
+        }
+
+        long evaluate(Object bean) {
+            Object value = accessor.getValue(bean);
+            long failed = check(value);
+            if (failed != 0 || value == null || nested == null) {
+                return failed;
+            }
+            return ValidationPlan.evaluateAll(nested, value);
+        }
+
+        /**
+         * Evalúa la regla sobre la columna de la propiedad en todas las filas; las propiedades
+         * anidadas se evalúan después sobre la columna de los valores que pasaron
+         */
+        void evaluateColumn(Object[] beans, int count, long[] failed) {
+            Object[] nestedBeans = nested != null ? new Object[count] : null;
+            for (int row = 0; row < count; row++) {
+                if (beans[row] == null) {
+                    continue;
+                }
+                Object value = accessor.getValue(beans[row]);
+                long result = check(value);
+                failed[row] |= result;
+                if (nestedBeans != null && result == 0) {
+                    nestedBeans[row] = value;
+                }
+            }
+            if (nestedBeans != null) {
+                ValidationPlan.evaluateColumns(nested, nestedBeans, count, failed);
+            }
+        }
+
+        private long check(Object value) {
+            if (value == null || (value instanceof CharSequence text && text.toString().isBlank())) {
+                if (value == null || requiredBit != 0) {
+                    return requiredBit;
+                }
+            }
+
+            if (expectedType != null && (!expectedType.isInstance(value)
+                    || (integral && (value instanceof Double || value instanceof Float)))) {
+                return typeBit;
+            }
+            if (value instanceof Number number) {
+                double numeric = number.doubleValue();
+                if (minimum != null && numeric < minimum) {
+                    return minimumBit;
+                }
+                if (maximum != null && numeric > maximum) {
+                    return maximumBit;
+                }
+            }
+            if (value instanceof CharSequence text) {
+                if (minLength != null && text.toString().strip().length() < minLength) {
+                    return minLengthBit;
+                }
+                if (maxLength != null && text.length() > maxLength) {
+                    return maxLengthBit;
+                }
+                if (pattern != null && !pattern.matcher(text).matches()) {
+                    return patternBit;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Incluye las propiedades del schema; las de tipo objeto con propiedades propias se
+     * filtran a su vez, el resto se incluye completo
+     */
+    private static class SchemaFieldsFilter extends TokenFilter {
+
+        private final Map<String, TokenFilter> properties = new HashMap<>();
+
+        SchemaFieldsFilter(JsonNode schema) {
+            schema.path("properties").properties().forEach(property -> {
+                JsonNode nested = property.getValue().path("properties");
+                properties.put(property.getKey(), nested.isObject() && !nested.isEmpty()
+                        ? new SchemaFieldsFilter(property.getValue())
+                        : TokenFilter.INCLUDE_ALL);
+            });
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            return properties.get(name);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.challenge.telus.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Utilidad para la compresión opcional de los archivos JSONL (raw, processed y dlq)
+ * Los archivos gzip pueden estar formados por varios miembros concatenados (uno por
+ * página o por apertura en modo append); GZIPInputStream los lee como un único flujo
+ */
+public class CompressionUtil {
+
+    public static final String NONE = "none";
+    public static final String GZIP = "gzip";
+
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressionUtil() {
+    }
+
+    /**
+     * Normaliza el formato configurado (none o gzip)
+     */
+    public static String normalize(String format) {
+        if (format == null || format.isBlank() || NONE.equalsIgnoreCase(format)) {
+            return NONE;
+        }
+        if (GZIP.equalsIgnoreCase(format)) {
+            return GZIP;
+        }
+        throw new IllegalArgumentException("Formato de compresión no soportado: " + format);
+    }
+
+    /**
+     * Extensión que se agrega al nombre del archivo según el formato
+     */
+    public static String extension(String format) {
+        return GZIP.equals(format) ? GZIP_EXTENSION : "";
+    }
+
+    /**
+     * Formato de compresión de un archivo según su extensión
+     */
+    public static String formatOf(String fileName) {
+        return fileName != null && fileName.endsWith(GZIP_EXTENSION) ? GZIP : NONE;
+    }
+
+    /**
+     * Quita la extensión de compresión de un nombre de archivo
+     */
+    public static String stripExtension(String fileName) {
+        return GZIP.equals(formatOf(fileName))
+                ? fileName.substring(0, fileName.length() - GZIP_EXTENSION.length())
+                : fileName;
+    }
+
+    /**
+     * Comprime un bloque de bytes como un miembro gzip independiente
+     */
+    public static byte[] compress(byte[] data, String format) throws IOException {
+        if (!GZIP.equals(format)) {
+            return data;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(512, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, BUFFER_SIZE)) {
+            gzip.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Abre un archivo en modo append; en gzip cada apertura agrega un miembro nuevo
+     */
+    public static OutputStream openForAppend(File file, String format) throws IOException {
+        OutputStream out = new FileOutputStream(file, true);
+        return GZIP.equals(format)
+                ? new GZIPOutputStream(out, BUFFER_SIZE)
+                : new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Abre un archivo para lectura descomprimiéndolo de forma transparente si es gzip
+     */
+    public static InputStream openForRead(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return GZIP.equals(formatOf(file.getName()))
+                ? new GZIPInputStream(in, BUFFER_SIZE)
+                : new BufferedInputStream(in, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,152 @@
+package com.challenge.telus.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer de un archivo JSONL de salida con commit agrupado
+ * Las líneas se acumulan en memoria y se escriben al canal en un único write cuando el
+ * buffer supera el tamaño configurado o pasó el intervalo desde el último commit. El canal
+ * queda abierto mientras dura el archivo de entrada y se fuerza a disco una sola vez al cerrar.
+ * En gzip todo el archivo es un único miembro; cada commit hace un flush sincronizado del
+ * compresor para que lo confirmado pueda leerse aunque el proceso se corte.
+ * Las líneas, los bytes en disco y el CRC32C de esos bytes se calculan durante la escritura,
+ * así el resumen del archivo no requiere volver a leerlo.
+ */
+@Slf4j
+public class GroupCommitWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long initialSize;
+    private final CheckedOutputStream checkedOut;
+    private final OutputStream out;
+    private final ByteArrayOutputStream pending;
+    private final int commitBytes;
+    private final long commitIntervalMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long lastCommit;
+    private long lines;
+    private boolean closed;
+    private OutputFileStats stats;
+
+    public GroupCommitWriter(Path path, String compression, int commitBytes, long commitIntervalMillis) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.initialSize = channel.size();
+        this.checkedOut = new CheckedOutputStream(Channels.newOutputStream(channel), new CRC32C());
+        this.out = CompressionUtil.GZIP.equals(compression)
+                ? new GZIPOutputStream(checkedOut, BUFFER_SIZE, true)
+                : checkedOut;
+        this.pending = new ByteArrayOutputStream(Math.max(BUFFER_SIZE, commitBytes));
+        this.commitBytes = commitBytes;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.lastCommit = System.currentTimeMillis();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Resumen del archivo (líneas, bytes en disco y checksum); disponible después de close
+     */
+    public OutputFileStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Agrega una línea (sin salto de línea final); commitea si se alcanzó el tamaño o el intervalo
+     */
+    public void writeLine(byte[] line) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("El archivo de salida ya está cerrado: " + path);
+            }
+            pending.write(line);
+            pending.write('\n');
+            lines++;
+            if (pending.size() >= commitBytes || isCommitDue()) {
+                commit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commitea lo pendiente si pasó el intervalo (lo invoca el flusher periódico)
+     */
+    public void commitIfDue() throws IOException {
+        lock.lock();
+        try {
+            if (!closed && pending.size() > 0 && isCommitDue()) {
+                commit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Escribe lo pendiente, completa el trailer gzip, fuerza a disco y cierra el canal
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                commit();
+                if (out instanceof GZIPOutputStream gzip) {
+                    gzip.finish();
+                }
+                out.flush();
+                channel.force(true);
+                stats = new OutputFileStats(lines, channel.size() - initialSize,
+                        String.format("%08x", checkedOut.getChecksum().getValue()));
+            } finally {
+                out.close();
+            }
+            log.debug("Archivo de salida cerrado: {} ({} líneas, {} bytes, crc32c {})", path, lines,
+                    stats.bytes(), stats.checksum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isCommitDue() {
+        return System.currentTimeMillis() - lastCommit >= commitIntervalMillis;
+    }
+
+    private void commit() throws IOException {
+        if (pending.size() > 0) {
+            pending.writeTo(out);
+            out.flush();
+            pending.reset();
+        }
+        lastCommit = System.currentTimeMillis();
+    }
+}
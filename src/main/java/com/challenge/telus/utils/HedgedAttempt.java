@@ -0,0 +1,110 @@
+package com.challenge.telus.utils;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Intento de un request hedged que puede abortarse cuando el otro intento ya ganó
+ * Mientras se envía queda asociado al hilo del intento; el interceptor del cliente HTTP
+ * registra ahí el request en curso, así cancelar el intento aborta la conexión y libera
+ * el slot del rate limiter en lugar de esperar la respuesta descartada
+ */
+public class HedgedAttempt {
+
+    private static final ThreadLocal<HedgedAttempt> CURRENT = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Thread thread;
+    private Cancellable request;
+    private boolean cancelled;
+
+    /**
+     * Asocia el intento al hilo actual; devuelve false si ya fue cancelado
+     */
+    public boolean start() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return false;
+            }
+            thread = Thread.currentThread();
+            CURRENT.set(this);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Desasocia el intento del hilo (que es del pool y se reutiliza)
+     */
+    public void finish() {
+        lock.lock();
+        try {
+            CURRENT.remove();
+            thread = null;
+            request = null;
+            // Limpia una interrupción de cancel() que llegó cuando el request ya había terminado
+            Thread.interrupted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Aborta el request en curso; si todavía espera al rate limiter, interrumpe la espera
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (request != null) {
+                request.cancel();
+            }
+            if (thread != null) {
+                thread.interrupt();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registra el request que está enviando el hilo actual, si pertenece a un intento hedged
+     */
+    public static void registerRequest(Object httpRequest) {
+        HedgedAttempt attempt = CURRENT.get();
+        if (attempt == null || !(httpRequest instanceof Cancellable cancellable)) {
+            return;
+        }
+        attempt.lock.lock();
+        try {
+            attempt.request = cancellable;
+            if (attempt.cancelled) {
+                cancellable.cancel();
+            }
+        } finally {
+            attempt.lock.unlock();
+        }
+    }
+
+    /**
+     * Indica si el hilo actual envía un intento hedged ya cancelado (su error no es un timeout real)
+     */
+    public static boolean isCurrentCancelled() {
+        HedgedAttempt attempt = CURRENT.get();
+        if (attempt == null) {
+            return false;
+        }
+        attempt.lock.lock();
+        try {
+            return attempt.cancelled;
+        } finally {
+            attempt.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.challenge.telus.utils;
+
+import com.challenge.telus.services.OutputWriterManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Archivos JSONL de salida (processed y dlq) abiertos durante el procesamiento de un archivo de entrada
+ * Cada archivo usa un writer con commit agrupado del OutputWriterManager que queda abierto
+ * hasta closeAll, donde se escribe lo pendiente y se fuerza a disco una sola vez
+ * En modo ordenado las líneas escritas con número de secuencia se retienen hasta que todas
+ * las líneas anteriores del archivo de entrada terminaron, así la salida respeta el orden
+ * de entrada aunque las líneas se procesen en paralelo
+ */
+@Slf4j
+public class JsonlOutputFiles {
+
+    private final OutputWriterManager writerManager;
+    private final boolean ordered;
+    private final Map<String, GroupCommitWriter> writers = new ConcurrentHashMap<>();
+    private final Map<String, OutputFileStats> closedStats = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Estado del modo ordenado (protegido por lock)
+    private final Map<Integer, List<PendingLine>> pendingLines = new HashMap<>();
+    private final Set<Integer> completedSequences = new HashSet<>();
+    private int nextSequence;
+
+    public JsonlOutputFiles(OutputWriterManager writerManager) {
+        this(writerManager, false);
+    }
+
+    public JsonlOutputFiles(OutputWriterManager writerManager, boolean ordered) {
+        this.writerManager = writerManager;
+        this.ordered = ordered;
+    }
+
+    public String getCompression() {
+        return writerManager.getCompression();
+    }
+
+    /**
+     * Resumen de un archivo ya cerrado (vacío si nunca se escribió)
+     */
+    public OutputFileStats getStats(String filePath) {
+        return filePath != null ? closedStats.getOrDefault(filePath, OutputFileStats.EMPTY) : OutputFileStats.EMPTY;
+    }
+
+    /**
+     * Escribe una línea (sin salto de línea final) en el archivo indicado, abriéndolo si hace falta
+     */
+    public void writeLine(String filePath, byte[] line) throws IOException {
+        GroupCommitWriter writer = writers.get(filePath);
+        if (writer == null) {
+            writer = open(filePath);
+        }
+        writer.writeLine(line);
+    }
+
+    /**
+     * Escribe una línea producida por la línea de entrada con el número de secuencia indicado
+     * En modo ordenado queda retenida hasta que se completen las secuencias anteriores
+     */
+    public void writeLine(String filePath, byte[] line, Integer sequence) throws IOException {
+        if (!ordered || sequence == null) {
+            writeLine(filePath, line);
+            return;
+        }
+        lock.lock();
+        try {
+            if (sequence < nextSequence) {
+                // La secuencia ya se liberó: se escribe directamente
+                writeLine(filePath, line);
+                return;
+            }
+            pendingLines.computeIfAbsent(sequence, key -> new ArrayList<>()).add(new PendingLine(filePath, line));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marca como terminada una línea de entrada (haya producido salida o no) y escribe las
+     * líneas retenidas que ya quedaron en orden
+     */
+    public void completeSequence(Integer sequence) throws IOException {
+        if (!ordered || sequence == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            completedSequences.add(sequence);
+            while (completedSequences.remove(nextSequence)) {
+                List<PendingLine> lines = pendingLines.remove(nextSequence);
+                if (lines != null) {
+                    for (PendingLine pending : lines) {
+                        writeLine(pending.filePath(), pending.line());
+                    }
+                }
+                nextSequence++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra todos los archivos abiertos: escribe lo pendiente, completa el trailer gzip y fuerza a disco
+     * Las líneas todavía retenidas (de secuencias que nunca se completaron) se escriben antes de cerrar
+     * Devuelve false si alguna línea o archivo no se pudo escribir o cerrar (la salida no es durable)
+     */
+    public boolean closeAll() {
+        boolean durable = true;
+        lock.lock();
+        try {
+            if (!pendingLines.isEmpty()) {
+                log.warn("Escribiendo {} líneas retenidas fuera de orden al cerrar", pendingLines.size());
+                for (Integer sequence : pendingLines.keySet().stream().sorted().toList()) {
+                    for (PendingLine pending : pendingLines.get(sequence)) {
+                        try {
+                            writeLine(pending.filePath(), pending.line());
+                        } catch (IOException e) {
+                            log.error("Error al escribir una línea retenida en {}", pending.filePath(), e);
+                            durable = false;
+                        }
+                    }
+                }
+                pendingLines.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Map.Entry<String, GroupCommitWriter> entry : writers.entrySet()) {
+            try {
+                writerManager.close(entry.getValue());
+                closedStats.put(entry.getKey(), entry.getValue().getStats());
+            } catch (IOException e) {
+                log.error("Error al cerrar el archivo de salida {}", entry.getKey(), e);
+                durable = false;
+            }
+        }
+        writers.clear();
+        return durable;
+    }
+
+    private GroupCommitWriter open(String filePath) throws IOException {
+        lock.lock();
+        try {
+            GroupCommitWriter writer = writers.get(filePath);
+            if (writer == null) {
+                writer = writerManager.open(filePath);
+                writers.put(filePath, writer);
+            }
+            return writer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record PendingLine(String filePath, byte[] line) {
+    }
+}
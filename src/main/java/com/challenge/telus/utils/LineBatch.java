@@ -0,0 +1,72 @@
+package com.challenge.telus.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lote de líneas JSONL como bytes: todas las líneas copiadas en un único arreglo con el
+ * inicio y el largo de cada una, para parsearlas sin crear un String por línea
+ */
+public class LineBatch {
+
+    private final byte[] data;
+    private final int[] starts;
+    private final int[] lengths;
+    private final int count;
+
+    public LineBatch(byte[] data, int[] starts, int[] lengths, int count) {
+        this.data = data;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.count = count;
+    }
+
+    /**
+     * Arma el lote desde un bloque de texto (lectura por stream), omitiendo las líneas vacías
+     */
+    public static LineBatch of(String lines) {
+        byte[] data = lines.getBytes(StandardCharsets.UTF_8);
+        int[] starts = new int[16];
+        int[] lengths = new int[16];
+        int count = 0;
+
+        int lineStart = 0;
+        while (lineStart < data.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < data.length && data[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - lineStart;
+            if (length > 0 && data[lineEnd - 1] == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    lengths = Arrays.copyOf(lengths, count * 2);
+                }
+                starts[count] = lineStart;
+                lengths[count] = length;
+                count++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new LineBatch(data, starts, lengths, count);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+}
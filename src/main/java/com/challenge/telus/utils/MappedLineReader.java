@@ -0,0 +1,142 @@
+package com.challenge.telus.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lector de líneas JSONL sobre el archivo mapeado en memoria
+ * Busca los saltos de línea directamente en los bytes mapeados y entrega lotes de líneas
+ * (LineBatch) sin decodificar caracteres. El archivo se mapea por ventanas, así se pueden
+ * leer archivos de más de 2 GB; una línea que cruza el final de la ventana hace que la
+ * siguiente ventana empiece en el inicio de esa línea.
+ * Se usa como iterador del split de la transformación (solo archivos sin comprimir)
+ */
+@Slf4j
+public class MappedLineReader implements Iterator<LineBatch>, Closeable {
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int batchLines;
+    private final long windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+    private LineBatch nextBatch;
+    private boolean finished;
+
+    public MappedLineReader(Path file, int batchLines, long windowBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.batchLines = Math.max(1, batchLines);
+        this.windowBytes = Math.min(Math.max(windowBytes, 1024), Integer.MAX_VALUE);
+        mapWindow(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextBatch == null && !finished) {
+            try {
+                nextBatch = readBatch();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error al leer el archivo mapeado", e);
+            }
+            finished = nextBatch == null;
+        }
+        return nextBatch != null;
+    }
+
+    @Override
+    public LineBatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        LineBatch batch = nextBatch;
+        nextBatch = null;
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Junta hasta batchLines líneas no vacías copiándolas en un único arreglo
+     */
+    private LineBatch readBatch() throws IOException {
+        byte[] data = new byte[0];
+        int[] starts = new int[batchLines];
+        int[] lengths = new int[batchLines];
+        int count = 0;
+        int used = 0;
+
+        while (count < batchLines) {
+            long lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                break;
+            }
+            int length = (int) (lineEnd - position);
+            if (length > 0 && window.get(position + length - 1) == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                if (used + length > data.length) {
+                    data = Arrays.copyOf(data, Math.max(used + length, Math.max(8192, data.length * 2)));
+                }
+                window.get(position, data, used, length);
+                starts[count] = used;
+                lengths[count] = length;
+                used += length;
+                count++;
+            }
+            position = (int) Math.min(lineEnd + 1, window.limit());
+        }
+
+        return count > 0 ? new LineBatch(data, starts, lengths, count) : null;
+    }
+
+    /**
+     * Posición (relativa a la ventana) del salto de línea que termina la línea actual,
+     * remapeando la ventana si la línea continúa en la siguiente; -1 al final del archivo
+     */
+    private long findLineEnd() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            for (int i = position; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+
+            boolean lastWindow = windowStart + limit >= fileSize;
+            if (lastWindow) {
+                // Última línea sin salto de línea final
+                return position < limit ? limit : -1;
+            }
+            if (position == 0) {
+                throw new IOException("Línea mayor que la ventana de mapeo (" + windowBytes + " bytes)");
+            }
+            mapWindow(windowStart + position);
+        }
+    }
+
+    private void mapWindow(long start) throws IOException {
+        long size = Math.min(windowBytes, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        position = 0;
+        log.debug("Ventana mapeada: {} - {} de {} bytes", start, start + size, fileSize);
+    }
+}
@@ -0,0 +1,12 @@
+package com.challenge.telus.utils;
+
+/**
+ * Resumen de un archivo de salida calculado durante la escritura
+ * @param records líneas escritas
+ * @param bytes bytes escritos en disco (comprimidos si corresponde)
+ * @param checksum CRC32C en hexadecimal de los bytes escritos en disco
+ */
+public record OutputFileStats(long records, long bytes, String checksum) {
+
+    public static final OutputFileStats EMPTY = new OutputFileStats(0, 0, null);
+}
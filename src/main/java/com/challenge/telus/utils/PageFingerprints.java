@@ -0,0 +1,26 @@
+package com.challenge.telus.utils;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Huellas de contenido (id → hash) de los usuarios de una página en extracción delta
+ * Viajan en el exchange hasta que la página queda confirmada en el checkpoint y recién ahí
+ * se registran en el índice de huellas
+ */
+public class PageFingerprints {
+
+    private final Map<Long, Long> fingerprints;
+
+    public PageFingerprints(Map<Long, Long> fingerprints) {
+        this.fingerprints = Collections.unmodifiableMap(fingerprints);
+    }
+
+    public Map<Long, Long> getFingerprints() {
+        return fingerprints;
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+}
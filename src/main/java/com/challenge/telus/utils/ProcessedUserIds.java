@@ -0,0 +1,47 @@
+package com.challenge.telus.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ids de los usuarios escritos en processed para un archivo de entrada
+ * Se crean antes del split y se comparten por referencia con todos los lotes (incluso en
+ * paralelo); los ids quedan reservados en el índice de usuarios procesados y se confirman
+ * recién cuando los archivos de salida se cerraron bien, o se descartan si el archivo falló
+ */
+public class ProcessedUserIds {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] ids = new long[1024];
+    private int size;
+
+    public void add(long id) {
+        lock.lock();
+        try {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long[] toArray() {
+        lock.lock();
+        try {
+            return Arrays.copyOf(ids, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.challenge.telus.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contadores de registros de un archivo de entrada
+ * Se crean antes del split y se comparten por referencia con todas las líneas, así los
+ * incrementos hechos en los sub-exchanges (incluso en paralelo) llegan al exchange padre
+ */
+public class RecordCounters {
+
+    private final AtomicInteger validRecords = new AtomicInteger();
+    private final AtomicInteger invalidRecords = new AtomicInteger();
+    private final AtomicInteger duplicateRecords = new AtomicInteger();
+    private final AtomicInteger droppedRecords = new AtomicInteger();
+
+    public void incrementValid() {
+        validRecords.incrementAndGet();
+    }
+
+    public void incrementInvalid() {
+        invalidRecords.incrementAndGet();
+    }
+
+    /**
+     * Cuenta un usuario duplicado; si se descartó (no fue a la DLQ) también suma al total
+     */
+    public void incrementDuplicate(boolean dropped) {
+        duplicateRecords.incrementAndGet();
+        if (dropped) {
+            droppedRecords.incrementAndGet();
+        }
+    }
+
+    public int getValidRecords() {
+        return validRecords.get();
+    }
+
+    public int getInvalidRecords() {
+        return invalidRecords.get();
+    }
+
+    public int getDuplicateRecords() {
+        return duplicateRecords.get();
+    }
+
+    public int getTotalRecords() {
+        return validRecords.get() + invalidRecords.get() + droppedRecords.get();
+    }
+}
@@ -0,0 +1,32 @@
+package com.challenge.telus;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Cierra al terminar cada test los recursos que abrió (índices, journals, writers), en orden
+ * inverso al de creación; se usa con @RegisterExtension
+ */
+public class CloseAfterEach implements AfterEachCallback {
+
+    private final Deque<Runnable> closers = new ArrayDeque<>();
+
+    /**
+     * Registra un recurso con la operación que lo cierra y lo devuelve
+     */
+    public <T> T register(T resource, Consumer<? super T> close) {
+        closers.push(() -> close.accept(resource));
+        return resource;
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        while (!closers.isEmpty()) {
+            closers.pop().run();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.challenge.telus.processors;
+
+import com.challenge.telus.CloseAfterEach;
+import com.challenge.telus.models.ApiResponse;
+import com.challenge.telus.models.ExtractionState;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escritura de páginas en el segmento JSONL de la corrida: alineación con el offset confirmado al
+ * reanudar, rotación de segmentos y publicación con rename atómico
+ */
+class JsonlWriterProcessorTest {
+
+    @RegisterExtension
+    final CloseAfterEach resources = new CloseAfterEach();
+
+    private final CamelContext camelContext = new DefaultCamelContext();
+
+    @TempDir
+    Path outputDirectory;
+
+    @Test
+    void truncatesUncommittedPageOnResume() throws Exception {
+        JsonlWriterProcessor processor = newProcessor(0);
+        ExtractionState state = ExtractionState.createInitial(300, 100);
+        writePage(processor, state, "{\"id\":1}", "{\"id\":2}");
+        ExtractionState checkpoint = state.copy();
+
+        // La segunda página llega a disco pero el proceso se corta antes del checkpoint
+        writePage(processor, state, "{\"id\":3}", "{\"id\":4}");
+        processor.closeSegmentChannel();
+        Path part = outputDirectory.resolve(checkpoint.getOutputFile() + ".part");
+        assertEquals(4, Files.readAllLines(part).size());
+
+        // Al reanudar desde el checkpoint la página se vuelve a escribir una sola vez
+        JsonlWriterProcessor resumed = newProcessor(0);
+        writePage(resumed, checkpoint, "{\"id\":3}", "{\"id\":4}");
+
+        assertEquals(List.of("{\"id\":1}", "{\"id\":2}", "{\"id\":3}", "{\"id\":4}"), Files.readAllLines(part));
+        assertEquals(Files.size(part), checkpoint.getOutputBytes());
+        assertEquals(4, checkpoint.getOutputSegmentRecords());
+    }
+
+    @Test
+    void continuesAtEndWhenSegmentIsShorterThanCheckpoint() throws Exception {
+        JsonlWriterProcessor processor = newProcessor(0);
+        ExtractionState state = ExtractionState.createInitial(300, 100);
+        writePage(processor, state, "{\"id\":1}");
+        processor.closeSegmentChannel();
+
+        ExtractionState checkpoint = state.copy();
+        checkpoint.setOutputBytes(checkpoint.getOutputBytes() + 100);
+
+        JsonlWriterProcessor resumed = newProcessor(0);
+        writePage(resumed, checkpoint, "{\"id\":2}");
+
+        Path part = outputDirectory.resolve(checkpoint.getOutputFile() + ".part");
+        assertEquals(List.of("{\"id\":1}", "{\"id\":2}"), Files.readAllLines(part));
+        assertEquals(Files.size(part), checkpoint.getOutputBytes());
+    }
+
+    @Test
+    void rotatesAndPublishesSegments() throws Exception {
+        JsonlWriterProcessor processor = newProcessor(2);
+        ExtractionState state = ExtractionState.createInitial(300, 100);
+        writePage(processor, state, "{\"id\":1}", "{\"id\":2}");
+        String firstSegment = state.getOutputFile();
+        assertTrue(Files.exists(outputDirectory.resolve(firstSegment + ".part")));
+        assertFalse(Files.exists(outputDirectory.resolve(firstSegment)));
+
+        // La página siguiente supera el máximo de registros: el segmento se publica antes de escribirla
+        writePage(processor, state, "{\"id\":3}");
+        String secondSegment = state.getOutputFile();
+        assertEquals(2, state.getOutputSegment());
+        assertEquals(List.of("{\"id\":1}", "{\"id\":2}"), Files.readAllLines(outputDirectory.resolve(firstSegment)));
+        assertFalse(Files.exists(outputDirectory.resolve(firstSegment + ".part")));
+        assertTrue(Files.exists(outputDirectory.resolve(secondSegment + ".part")));
+
+        JsonNode manifest = readManifest(firstSegment);
+        assertFalse(manifest.path("completed").asBoolean());
+        assertEquals(1, manifest.path("segments").size());
+
+        processor.finishRun(state);
+
+        assertEquals(List.of("{\"id\":3}"), Files.readAllLines(outputDirectory.resolve(secondSegment)));
+        assertFalse(Files.exists(outputDirectory.resolve(secondSegment + ".part")));
+        assertEquals(List.of(firstSegment, secondSegment), state.getCompletedSegments());
+        manifest = readManifest(firstSegment);
+        assertTrue(manifest.path("completed").asBoolean());
+        assertEquals(secondSegment, manifest.path("segments").get(1).path("file").asText());
+    }
+
+    @Test
+    void finishRunIsIdempotent() throws Exception {
+        JsonlWriterProcessor processor = newProcessor(0);
+        ExtractionState state = ExtractionState.createInitial(300, 100);
+        writePage(processor, state, "{\"id\":1}");
+
+        processor.finishRun(state);
+        processor.finishRun(state);
+
+        assertEquals(List.of(state.getOutputFile()), state.getCompletedSegments());
+        assertEquals(List.of("{\"id\":1}"), Files.readAllLines(outputDirectory.resolve(state.getOutputFile())));
+    }
+
+    @Test
+    void publishesRangeFileReplacingPreviousAttempt() throws Exception {
+        JsonlWriterProcessor processor = newProcessor(0);
+        byte[] firstAttempt = "{\"id\":1}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] secondAttempt = "{\"id\":2}\n".getBytes(StandardCharsets.UTF_8);
+
+        processor.writeRangeFile("run1", 0, List.of(firstAttempt));
+        Path published = Path.of(processor.writeRangeFile("run1", 0, List.of(secondAttempt, firstAttempt)));
+
+        assertEquals("records_run1_range_0001.jsonl", published.getFileName().toString());
+        assertEquals(List.of("{\"id\":2}", "{\"id\":1}"), Files.readAllLines(published));
+        assertFalse(Files.exists(outputDirectory.resolve("records_run1_range_0001.jsonl.part")));
+    }
+
+    private JsonNode readManifest(String segment) throws Exception {
+        String run = segment.substring(0, segment.lastIndexOf('_'));
+        return new ObjectMapper().readTree(outputDirectory.resolve(run + ".manifest.json").toFile());
+    }
+
+    private JsonlWriterProcessor newProcessor(int rotationMaxRecords) {
+        return resources.register(new JsonlWriterProcessor(outputDirectory.toString(),
+                "records_{date:yyyyMMdd_HHmmss}.jsonl", 0L, rotationMaxRecords, "none"),
+                JsonlWriterProcessor::closeSegmentChannel);
+    }
+
+    private void writePage(JsonlWriterProcessor processor, ExtractionState state, String... users) throws Exception {
+        ApiResponse page = new ApiResponse();
+        page.setRawUsers((String.join("\n", users) + "\n").getBytes(StandardCharsets.UTF_8));
+        page.setRawUserCount(users.length);
+
+        Exchange exchange = new DefaultExchange(camelContext);
+        exchange.setProperty("extractionState", state);
+        exchange.getIn().setBody(page);
+        processor.process(exchange);
+    }
+}
@@ -0,0 +1,115 @@
+package com.challenge.telus.processors;
+
+import com.challenge.telus.models.User;
+import com.challenge.telus.models.ValidationResult;
+import com.challenge.telus.services.UserValidationEngine;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mensajes de error del schema por defecto: deben ser los mismos que daban las validaciones
+ * escritas a mano que reemplazó el motor compilado
+ */
+class UserValidationProcessorTest {
+
+    private final UserValidationProcessor processor = new UserValidationProcessor(new UserValidationEngine(
+            new DefaultCamelContext(), new ClassPathResource("schemas/user-validation-schema.json"), 0L));
+
+    @Test
+    void acceptsValidUser() {
+        assertTrue(processor.validate(validUser()).isValid());
+    }
+
+    @Test
+    void nullId() {
+        assertErrors(user -> user.setId(null), "ID debe ser un entero positivo");
+    }
+
+    @Test
+    void nonPositiveId() {
+        assertErrors(user -> user.setId(0L), "ID debe ser un entero positivo");
+    }
+
+    @Test
+    void blankFirstName() {
+        assertErrors(user -> user.setFirstName("  "), "firstName es requerido y no puede estar vacío");
+    }
+
+    @Test
+    void blankEmail() {
+        assertErrors(user -> user.setEmail(" "), "email es requerido");
+    }
+
+    @Test
+    void nullEmail() {
+        assertErrors(user -> user.setEmail(null), "email es requerido");
+    }
+
+    @Test
+    void malformedEmail() {
+        assertErrors(user -> user.setEmail("ana@example"), "email debe tener formato válido");
+    }
+
+    @Test
+    void nullAge() {
+        assertErrors(user -> user.setAge(null), "age es requerido");
+    }
+
+    @Test
+    void ageOutOfRange() {
+        assertErrors(user -> user.setAge(17), "age debe estar entre 18 y 65 años");
+        assertErrors(user -> user.setAge(66), "age debe estar entre 18 y 65 años");
+    }
+
+    @Test
+    void nullCompany() {
+        assertErrors(user -> user.setCompany(null), "company es requerido");
+    }
+
+    @Test
+    void blankDepartment() {
+        assertErrors(user -> user.getCompany().setDepartment(""),
+                "company.department es requerido y no puede estar vacío");
+    }
+
+    @Test
+    void reportsEveryFailedFieldInOrder() {
+        assertErrors(user -> {
+            user.setId(null);
+            user.setEmail("invalido");
+            user.setAge(70);
+            user.setCompany(null);
+        }, "ID debe ser un entero positivo", "email debe tener formato válido",
+                "age debe estar entre 18 y 65 años", "company es requerido");
+    }
+
+    private void assertErrors(Consumer<User> change, String... expected) {
+        User user = validUser();
+        change.accept(user);
+
+        ValidationResult result = processor.validate(user);
+
+        assertFalse(result.isValid());
+        assertEquals(List.of(expected), result.getErrors());
+    }
+
+    private static User validUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setFirstName("Ana");
+        user.setEmail("ana@example.com");
+        user.setAge(30);
+        User.Company company = new User.Company();
+        company.setDepartment("Engineering");
+        user.setCompany(company);
+        return user;
+    }
+}
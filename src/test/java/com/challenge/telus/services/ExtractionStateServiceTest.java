@@ -0,0 +1,151 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.CloseAfterEach;
+import com.challenge.telus.config.JacksonConfig;
+import com.challenge.telus.models.ExtractionState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Journal de checkpoints del estado de extracción: replay, cola cortada, compactación y copias
+ */
+class ExtractionStateServiceTest {
+
+    @RegisterExtension
+    final CloseAfterEach resources = new CloseAfterEach();
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+
+    @TempDir
+    Path stateDirectory;
+
+    @Test
+    void replaysJournalCheckpointsOnRestart() {
+        ExtractionStateService service = newService(100);
+        ExtractionState state = service.getOrCreateState(1000, 100);
+        for (int page = 1; page <= 3; page++) {
+            state.updateProgress(page * 100, page * 100, 100);
+            service.saveState(state);
+        }
+        service.close();
+
+        ExtractionState recovered = newService(100).loadState();
+
+        assertNotNull(recovered);
+        assertEquals(300, recovered.getLastSuccessfulSkip());
+        assertEquals(300, recovered.getRecordsProcessed());
+        assertEquals(3, recovered.getPagesProcessed());
+        assertEquals(400, recovered.getResumeSkip());
+    }
+
+    @Test
+    void discardsTornTailAndKeepsAppendingValidLines() throws Exception {
+        ExtractionStateService service = newService(100);
+        ExtractionState state = service.getOrCreateState(1000, 100);
+        state.updateProgress(100, 100, 100);
+        service.saveState(state);
+        service.close();
+
+        Path journal = stateDirectory.resolve("extraction_state.journal");
+        long validLength = Files.size(journal);
+        Files.write(journal, "{\"sequence\":99,\"state\":{\"lastSucc".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        ExtractionStateService recoveredService = newService(100);
+        assertEquals(100, recoveredService.loadState().getLastSuccessfulSkip());
+        assertEquals(validLength, Files.size(journal));
+
+        // El próximo checkpoint queda en una línea propia y se recupera en el siguiente arranque
+        ExtractionState resumed = recoveredService.loadState();
+        resumed.updateProgress(200, 200, 100);
+        recoveredService.saveState(resumed);
+        recoveredService.close();
+
+        assertEquals(200, newService(100).loadState().getLastSuccessfulSkip());
+    }
+
+    @Test
+    void skipsCorruptLineAndReplaysLaterCheckpoints() throws Exception {
+        ExtractionStateService service = newService(100);
+        ExtractionState state = service.getOrCreateState(1000, 100);
+        state.updateProgress(100, 100, 100);
+        service.saveState(state);
+        service.close();
+
+        // Una línea completa dañada en medio del journal, seguida de un checkpoint válido posterior
+        Path journal = stateDirectory.resolve("extraction_state.journal");
+        List<String> lines = Files.readAllLines(journal);
+        String last = lines.get(lines.size() - 1);
+        String later = last.replaceFirst("\"sequence\":\\d+", "\"sequence\":99")
+                .replace("\"lastSuccessfulSkip\":100", "\"lastSuccessfulSkip\":200");
+        Files.writeString(journal, "{\"sequence\":50,\"sta\n" + later + "\n", StandardOpenOption.APPEND);
+        long length = Files.size(journal);
+
+        ExtractionStateService recovered = newService(100);
+
+        assertEquals(200, recovered.loadState().getLastSuccessfulSkip());
+        assertEquals(length, Files.size(journal));
+    }
+
+    @Test
+    void compactsJournalIntoStateFile() throws Exception {
+        ExtractionStateService service = newService(2);
+        ExtractionState state = service.getOrCreateState(1000, 100);
+        state.updateProgress(100, 100, 100);
+        service.saveState(state);
+        state.updateProgress(200, 200, 100);
+        service.saveState(state);
+        service.close();
+
+        assertTrue(Files.exists(stateDirectory.resolve("extraction_state.json")));
+        assertEquals(1, Files.readAllLines(stateDirectory.resolve("extraction_state.journal")).size());
+        assertEquals(200, newService(2).loadState().getLastSuccessfulSkip());
+    }
+
+    @Test
+    void keepsCheckpointIndependentOfCallerChanges() {
+        ExtractionStateService service = newService(100);
+        ExtractionState state = service.getOrCreateState(1000, 100);
+        state.updateProgress(100, 100, 100);
+        service.saveState(state);
+
+        state.updateProgress(200, 200, 100);
+        service.loadState().setLastSuccessfulSkip(500);
+
+        assertEquals(100, service.loadState().getLastSuccessfulSkip());
+    }
+
+    @Test
+    void recordsErrorsOnCommittedState() {
+        ExtractionStateService service = newService(100);
+        ExtractionState state = service.getOrCreateState(1000, 100);
+        service.recordError();
+        service.recordError();
+
+        // Un checkpoint posterior con el contador viejo no pisa los errores registrados
+        state.updateProgress(100, 100, 100);
+        service.saveState(state);
+        service.close();
+
+        ExtractionState recovered = newService(100).loadState();
+        assertEquals(2, recovered.getErrorCount());
+        assertEquals(100, recovered.getLastSuccessfulSkip());
+    }
+
+    private ExtractionStateService newService(int compactEvery) {
+        return resources.register(new ExtractionStateService(objectMapper, stateDirectory.toString(),
+                "extraction_state.json", "extraction_state.journal", 1, compactEvery), ExtractionStateService::close);
+    }
+}
@@ -0,0 +1,181 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.PageRangeCompletion;
+import com.challenge.telus.models.PageRangeTask;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vista del topic de completitud: lectura hasta los offsets del arranque, rangos fallidos,
+ * reintentos y espera de corridas
+ */
+class PageRangeCompletionServiceTest {
+
+    private final PageRangeCompletionService service = new PageRangeCompletionService();
+
+    @Test
+    void isNotReadyUntilCatchUpOffsetsAreKnownAndReached() throws Exception {
+        service.recordOffset(0, 0);
+        assertFalse(service.isReady());
+        assertFalse(service.awaitReady(10));
+
+        // Partición 0 con 3 registros (offsets 0-2), partición 1 vacía
+        service.setCatchUpOffsets(Map.of(0, 3L, 1, 0L));
+        assertTrue(service.hasCatchUpOffsets());
+        assertFalse(service.isReady());
+
+        service.recordOffset(0, 1);
+        assertFalse(service.isReady());
+        service.recordOffset(0, 2);
+        assertTrue(service.isReady());
+        assertTrue(service.awaitReady(0));
+    }
+
+    @Test
+    void emptyTopicIsReadyImmediately() {
+        service.setCatchUpOffsets(Map.of(0, 0L));
+
+        assertTrue(service.isReady());
+    }
+
+    @Test
+    void keepsFirstCatchUpOffsets() {
+        service.setCatchUpOffsets(Map.of(0, 2L));
+        service.setCatchUpOffsets(Map.of(0, 0L));
+
+        assertFalse(service.isReady());
+        service.recordOffset(0, 1);
+        assertTrue(service.isReady());
+    }
+
+    @Test
+    void awaitReadyWakesWhenLastOffsetIsRead() throws Exception {
+        service.setCatchUpOffsets(Map.of(0, 1L));
+
+        CompletableFuture<Boolean> ready = CompletableFuture.supplyAsync(() -> await(() -> service.awaitReady(5_000)));
+        service.recordOffset(0, 0);
+
+        assertTrue(ready.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void awaitRunReturnsFalseOnceEveryRangeIsSettledWithFailures() throws Exception {
+        service.record(PageRangeCompletion.planned("run", 3, 300, 100, 1));
+        service.record(completed("run", 0));
+        service.record(failed("run", 1));
+        service.record(failed("run", 2));
+
+        long start = System.nanoTime();
+        assertFalse(service.awaitRun("run", 5_000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+
+        assertEquals(List.of(1, 2), service.getFailedRanges("run"));
+        assertEquals(List.of(1, 2), service.getMissingRanges("run"));
+        assertFalse(service.isRunComplete("run"));
+        assertEquals(2, service.getProgress("run").get("rangesFailed"));
+    }
+
+    @Test
+    void retriedRangesAreAwaitedAgain() throws Exception {
+        service.record(PageRangeCompletion.planned("run", 2, 200, 100, 1));
+        service.record(completed("run", 0));
+        service.record(failed("run", 1));
+
+        service.retryRanges("run", List.of(1));
+
+        assertTrue(service.getFailedRanges("run").isEmpty());
+        // Ya no está resuelta: se espera hasta el timeout
+        assertFalse(service.awaitRun("run", 50));
+
+        CompletableFuture<Boolean> run = CompletableFuture.supplyAsync(() -> await(() -> service.awaitRun("run", 5_000)));
+        service.record(completed("run", 1));
+
+        assertTrue(run.get(5, TimeUnit.SECONDS));
+        assertTrue(service.isRunComplete("run"));
+    }
+
+    @Test
+    void completedSupersedesFailed() {
+        service.record(PageRangeCompletion.planned("run", 2, 200, 100, 1));
+
+        service.record(failed("run", 0));
+        service.record(completed("run", 0));
+        assertTrue(service.getFailedRanges("run").isEmpty());
+
+        // Un fallo tardío de un rango ya completado (otro intento) no lo marca como fallido
+        service.record(failed("run", 0));
+        assertTrue(service.getFailedRanges("run").isEmpty());
+        assertTrue(service.isRangeCompleted("run", 0));
+        assertEquals(List.of(1), service.getMissingRanges("run"));
+    }
+
+    @Test
+    void firstCompletionOfRangeCounts() {
+        service.record(PageRangeCompletion.planned("run", 2, 200, 100, 1));
+        PageRangeCompletion first = completed("run", 0);
+        first.setRecords(100);
+        PageRangeCompletion reprocessed = completed("run", 0);
+        reprocessed.setRecords(90);
+
+        service.record(first);
+        service.record(reprocessed);
+
+        Map<String, Object> progress = service.getProgress("run");
+        assertEquals(1, progress.get("rangesCompleted"));
+        assertEquals(100, progress.get("recordsProcessed"));
+        assertEquals(false, progress.get("completed"));
+    }
+
+    @Test
+    void findsLatestIncompleteRun() {
+        PageRangeCompletion older = PageRangeCompletion.planned("older", 1, 100, 100, 1);
+        older.setTimestamp(LocalDateTime.now().minusHours(1));
+        PageRangeCompletion newer = PageRangeCompletion.planned("newer", 1, 100, 100, 1);
+        PageRangeCompletion finished = PageRangeCompletion.planned("finished", 1, 100, 100, 1);
+        finished.setTimestamp(LocalDateTime.now().plusHours(1));
+        service.record(older);
+        service.record(newer);
+        service.record(finished);
+        service.record(completed("finished", 0));
+
+        assertEquals("newer", service.findResumableRun().orElseThrow().getRunId());
+    }
+
+    private static PageRangeCompletion completed(String runId, int rangeIndex) {
+        return PageRangeCompletion.completed(task(runId, rangeIndex), 100, "range.jsonl", "worker");
+    }
+
+    private static PageRangeCompletion failed(String runId, int rangeIndex) {
+        return PageRangeCompletion.failed(task(runId, rangeIndex), 3, "timeout", "worker");
+    }
+
+    private static PageRangeTask task(String runId, int rangeIndex) {
+        PageRangeTask task = new PageRangeTask();
+        task.setRunId(runId);
+        task.setRangeIndex(rangeIndex);
+        task.setLimit(100);
+        return task;
+    }
+
+    private static boolean await(InterruptibleCondition condition) {
+        try {
+            return condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private interface InterruptibleCondition {
+        boolean await() throws InterruptedException;
+    }
+}
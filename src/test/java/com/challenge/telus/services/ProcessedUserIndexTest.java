@@ -0,0 +1,136 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.CloseAfterEach;
+import com.challenge.telus.utils.CompressionUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Índice de usuarios procesados: reservas, confirmación por archivo, crecimiento de la tabla y
+ * del Bloom filter, y reconstrucción desde processed_users/
+ */
+class ProcessedUserIndexTest {
+
+    @RegisterExtension
+    final CloseAfterEach resources = new CloseAfterEach();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void claimsAreExclusiveUntilCommittedOrReleased() throws Exception {
+        ProcessedUserIndex index = newIndex(true);
+
+        assertTrue(index.claim(1L));
+        assertFalse(index.claim(1L));
+        assertTrue(index.claim(2L));
+
+        // Archivo fallido: las reservas se liberan y los ids se pueden volver a procesar
+        index.releaseAll(new long[]{1L, 2L});
+        assertTrue(index.claim(1L));
+
+        index.commitAll(new long[]{1L});
+        assertFalse(index.claim(1L));
+        index.close();
+
+        assertFalse(newIndex(true).claim(1L));
+    }
+
+    @Test
+    void commitsOnlyClaimedIds() throws Exception {
+        ProcessedUserIndex index = newIndex(true);
+        index.commitAll(new long[]{5L});
+
+        assertTrue(index.claim(5L));
+    }
+
+    @Test
+    void growsTableAndBloomFilterBeyondExpectedIds() throws Exception {
+        ProcessedUserIndex index = newIndex(true);
+        long initialSize = Files.size(tableFile());
+        long[] ids = LongStream.rangeClosed(1, 5_000).toArray();
+        for (long id : ids) {
+            assertTrue(index.claim(id));
+        }
+        index.commitAll(ids);
+
+        assertTrue(Files.size(tableFile()) > initialSize);
+        assertFalse(Files.exists(directory.resolve("state/processed_user_ids.idx.tmp")));
+        for (long id : ids) {
+            assertFalse(index.claim(id), "id " + id);
+        }
+        assertTrue(index.claim(5_001L));
+        index.close();
+
+        ProcessedUserIndex reopened = newIndex(true);
+        for (long id : ids) {
+            assertFalse(reopened.claim(id), "id " + id);
+        }
+    }
+
+    @Test
+    void rebuildsFromProcessedFilesWhenTableIsMissing() throws Exception {
+        Path processed = Files.createDirectories(directory.resolve("processed_users"));
+        Files.writeString(processed.resolve("etl_a.jsonl"),
+                "{\"id\":10,\"company\":{\"id\":99,\"department\":\"Engineering\"}}\n{\"id\":11}\n");
+        Files.write(processed.resolve("etl_b.jsonl.gz"),
+                CompressionUtil.compress("{\"originalUser\":{\"id\":50},\"id\":12}\n".getBytes(StandardCharsets.UTF_8),
+                        CompressionUtil.GZIP));
+
+        ProcessedUserIndex index = newIndex(true);
+
+        assertFalse(index.claim(10L));
+        assertFalse(index.claim(11L));
+        assertFalse(index.claim(12L));
+        // Solo cuenta el id de primer nivel
+        assertTrue(index.claim(99L));
+        assertTrue(index.claim(50L));
+    }
+
+    @Test
+    void rebuildsCorruptTableAndStaleBloomFilter() throws Exception {
+        ProcessedUserIndex index = newIndex(true);
+        index.claim(1L);
+        index.commitAll(new long[]{1L});
+        index.close();
+        Files.writeString(directory.resolve("processed_users/etl_a.jsonl"), "{\"id\":1}\n{\"id\":2}\n");
+
+        Files.write(tableFile(), new byte[]{1, 2, 3});
+        ProcessedUserIndex rebuilt = newIndex(true);
+
+        assertFalse(rebuilt.claim(1L));
+        assertFalse(rebuilt.claim(2L));
+        assertTrue(rebuilt.claim(3L));
+    }
+
+    @Test
+    void disabledIndexAcceptsEveryId() throws Exception {
+        ProcessedUserIndex index = newIndex(false);
+
+        assertTrue(index.claim(1L));
+        index.commitAll(new long[]{1L});
+        assertTrue(index.claim(1L));
+        assertFalse(Files.exists(tableFile()));
+    }
+
+    private ProcessedUserIndex newIndex(boolean enabled) throws Exception {
+        Files.createDirectories(directory.resolve("processed_users"));
+        return resources.register(new ProcessedUserIndex(enabled, directory.resolve("state").toString(),
+                "processed_user_ids.idx", "processed_user_ids.bloom", directory.resolve("processed_users").toString(),
+                1024L, 0.01), ProcessedUserIndex::close);
+    }
+
+    private Path tableFile() {
+        return directory.resolve("state/processed_user_ids.idx");
+    }
+}
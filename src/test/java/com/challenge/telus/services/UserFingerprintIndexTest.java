@@ -0,0 +1,127 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.CloseAfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Log de huellas de 16 bytes por registro: carga, último registro por id, cola cortada y compactación
+ */
+class UserFingerprintIndexTest {
+
+    @RegisterExtension
+    final CloseAfterEach resources = new CloseAfterEach();
+
+    @TempDir
+    Path stateDirectory;
+
+    @Test
+    void appendsSixteenByteRecordsAndReloadsLastPerId() throws Exception {
+        UserFingerprintIndex index = newIndex();
+        index.commit(Map.of(1L, 100L, 2L, 200L));
+        index.commit(Map.of(1L, 101L));
+        index.close();
+
+        assertEquals(3 * 16, Files.size(indexFile()));
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(indexFile()));
+        log.position(32);
+        assertEquals(1L, log.getLong());
+        assertEquals(101L, log.getLong());
+
+        UserFingerprintIndex reloaded = newIndex();
+        assertEquals(2, reloaded.size());
+        assertFalse(reloaded.isChanged(1L, 101L));
+        assertTrue(reloaded.isChanged(1L, 100L));
+        assertFalse(reloaded.isChanged(2L, 200L));
+        assertTrue(reloaded.isChanged(3L, 300L));
+    }
+
+    @Test
+    void truncatesPartialRecordAtTail() throws Exception {
+        UserFingerprintIndex index = newIndex();
+        index.commit(Map.of(1L, 100L));
+        index.close();
+        Files.write(indexFile(), new byte[]{0, 0, 0, 0, 0, 0, 0, 2, 0, 0}, StandardOpenOption.APPEND);
+
+        UserFingerprintIndex reloaded = newIndex();
+        assertEquals(1, reloaded.size());
+        assertEquals(16, Files.size(indexFile()));
+
+        // Los registros siguientes quedan alineados y se leen en el próximo arranque
+        reloaded.commit(Map.of(2L, 200L));
+        reloaded.close();
+        UserFingerprintIndex again = newIndex();
+        assertEquals(2, again.size());
+        assertFalse(again.isChanged(2L, 200L));
+    }
+
+    @Test
+    void loadsRecordsAcrossReadBufferBoundaries() throws Exception {
+        // Más registros que los que entran en el buffer de lectura de 64 KB
+        Map<Long, Long> page = new HashMap<>();
+        for (long id = 1; id <= 10_000; id++) {
+            page.put(id, id * 31);
+        }
+        UserFingerprintIndex index = newIndex();
+        index.commit(page);
+        index.close();
+
+        UserFingerprintIndex reloaded = newIndex();
+        assertEquals(10_000, reloaded.size());
+        assertFalse(reloaded.isChanged(4096L, 4096L * 31));
+        assertFalse(reloaded.isChanged(10_000L, 10_000L * 31));
+    }
+
+    @Test
+    void compactsLogToOneRecordPerUser() throws Exception {
+        // Se compacta cuando el log supera el doble de usuarios más 10.000 registros
+        UserFingerprintIndex index = newIndex();
+        for (int version = 0; version < 13; version++) {
+            Map<Long, Long> page = new HashMap<>();
+            for (long id = 1; id <= 1_000; id++) {
+                page.put(id, id + version);
+            }
+            index.commit(page);
+        }
+        index.close();
+
+        assertEquals(1_000 * 16, Files.size(indexFile()));
+        UserFingerprintIndex reloaded = newIndex();
+        assertEquals(1_000, reloaded.size());
+        assertFalse(reloaded.isChanged(5L, 17L));
+    }
+
+    @Test
+    void fingerprintDependsOnContent() {
+        UserFingerprintIndex index = newIndex();
+        byte[] content = "xx{\"id\":1,\"age\":30}xx".getBytes(StandardCharsets.UTF_8);
+        byte[] same = "{\"id\":1,\"age\":30}".getBytes(StandardCharsets.UTF_8);
+        byte[] changed = "{\"id\":1,\"age\":31}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(index.fingerprint(same, 0, same.length), index.fingerprint(content, 2, content.length - 4));
+        assertNotEquals(index.fingerprint(same, 0, same.length), index.fingerprint(changed, 0, changed.length));
+    }
+
+    private UserFingerprintIndex newIndex() {
+        return resources.register(new UserFingerprintIndex(stateDirectory.toString(), "user_fingerprints.idx"),
+                UserFingerprintIndex::close);
+    }
+
+    private Path indexFile() {
+        return stateDirectory.resolve("user_fingerprints.idx");
+    }
+}
@@ -0,0 +1,160 @@
+package com.challenge.telus.services;
+
+import com.challenge.telus.models.RuleEvaluation;
+import com.challenge.telus.models.User;
+import com.challenge.telus.models.ValidationBatchResult;
+import com.challenge.telus.models.ValidationResult;
+import com.challenge.telus.processors.UserValidationProcessor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validación por bloques (bitset de filas válidas) contra la validación usuario por usuario
+ */
+class UserValidationEngineTest {
+
+    private final UserValidationEngine engine = new UserValidationEngine(new DefaultCamelContext(),
+            new ClassPathResource("schemas/user-validation-schema.json"), 0L);
+
+    @Test
+    void batchMatchesPerUserEvaluation() {
+        // Más de 64 filas para cubrir varias palabras del bitset, y un bloque parcial al final
+        User[] users = randomUsers(1000, 7);
+        int count = 937;
+
+        ValidationBatchResult batch = engine.evaluateBatch(users, count);
+
+        assertEquals(count, batch.size());
+        int valid = 0;
+        for (int row = 0; row < count; row++) {
+            long expected = engine.evaluate(users[row]).getFailedRules();
+            assertEquals(expected, batch.getFailedRules(row), "fila " + row);
+            assertEquals(expected == 0, batch.isValid(row), "fila " + row);
+            valid += expected == 0 ? 1 : 0;
+        }
+        assertEquals(valid, batch.getValidCount());
+        assertFalse(batch.isAllValid());
+    }
+
+    @Test
+    void batchErrorsMatchProcessorValidate() {
+        UserValidationProcessor processor = new UserValidationProcessor(engine);
+        User[] users = randomUsers(300, 11);
+
+        ValidationBatchResult batch = processor.validateBatch(users, users.length);
+
+        for (int row = 0; row < users.length; row++) {
+            ValidationResult single = processor.validate(users[row]);
+            assertEquals(single.isValid(), batch.isValid(row), "fila " + row);
+            if (!single.isValid()) {
+                ValidationResult fromBatch = processor.invalidResult(users[row], batch, row);
+                assertEquals(single.getErrors(), fromBatch.getErrors(), "fila " + row);
+            }
+        }
+    }
+
+    @Test
+    void reportsRulesInSchemaOrder() {
+        User user = new User();
+        user.setId(0L);
+        user.setFirstName("");
+        user.setEmail("invalido");
+        user.setAge(70);
+
+        assertEquals(List.of(
+                "ID debe ser un entero positivo",
+                "firstName es requerido y no puede estar vacío",
+                "email debe tener formato válido",
+                "age debe estar entre 18 y 65 años",
+                "company es requerido"), engine.evaluate(user).getErrors());
+    }
+
+    @Test
+    void keepsMessagesOfEvaluatingPlanAcrossReload(@TempDir Path directory) throws Exception {
+        Path schema = directory.resolve("schema.json");
+        try (InputStream in = new ClassPathResource("schemas/user-validation-schema.json").getInputStream()) {
+            Files.copy(in, schema);
+        }
+        UserValidationEngine reloadable = new UserValidationEngine(new DefaultCamelContext(),
+                new FileSystemResource(schema), 0L);
+        User user = validUser(1L);
+        user.setAge(70);
+        User[] users = {user};
+
+        RuleEvaluation evaluation = reloadable.evaluate(user);
+        ValidationBatchResult batch = reloadable.evaluateBatch(users, 1);
+
+        // El schema nuevo tiene una sola regla: los bits del plan anterior no existen en él
+        Files.writeString(schema, "{\"type\":\"object\",\"required\":[\"id\"],\"properties\":{\"id\":{}}}");
+        assertTrue(reloadable.reload());
+
+        assertEquals(List.of("age debe estar entre 18 y 65 años"), evaluation.getErrors());
+        assertEquals(List.of("age debe estar entre 18 y 65 años"), batch.getErrors(0));
+        assertTrue(reloadable.evaluate(user).isValid());
+    }
+
+    @Test
+    void allValidBatch() {
+        User[] users = {validUser(1L), validUser(2L), validUser(3L)};
+
+        ValidationBatchResult batch = engine.evaluateBatch(users, users.length);
+
+        assertTrue(batch.isAllValid());
+        assertEquals(3, batch.getValidCount());
+    }
+
+    private static User[] randomUsers(int size, long seed) {
+        Random random = new Random(seed);
+        Long[] ids = {null, 0L, -1L, 1L, 99L};
+        String[] names = {null, "", " ", "Ana"};
+        String[] emails = {null, "", "ana@example.com", "invalido", "a b@c.com"};
+        Integer[] ages = {null, 17, 18, 40, 65, 66};
+        String[] departments = {null, "", " ", "Engineering"};
+
+        User[] users = new User[size];
+        for (int i = 0; i < size; i++) {
+            // Un tercio de usuarios completamente válidos para que el bloque mezcle ambos casos
+            if (i % 3 == 0) {
+                users[i] = validUser(i + 1L);
+                continue;
+            }
+            User user = new User();
+            user.setId(ids[random.nextInt(ids.length)]);
+            user.setFirstName(names[random.nextInt(names.length)]);
+            user.setEmail(emails[random.nextInt(emails.length)]);
+            user.setAge(ages[random.nextInt(ages.length)]);
+            if (random.nextBoolean()) {
+                User.Company company = new User.Company();
+                company.setDepartment(departments[random.nextInt(departments.length)]);
+                user.setCompany(company);
+            }
+            users[i] = user;
+        }
+        return users;
+    }
+
+    private static User validUser(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName("Ana");
+        user.setEmail("ana@example.com");
+        user.setAge(30);
+        User.Company company = new User.Company();
+        company.setDepartment("Engineering");
+        user.setCompany(company);
+        return user;
+    }
+}
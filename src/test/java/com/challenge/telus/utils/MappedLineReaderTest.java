@@ -0,0 +1,121 @@
+package com.challenge.telus.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Lectura de líneas por ventanas mapeadas: líneas que cruzan o terminan justo en el borde de la ventana
+ */
+class MappedLineReaderTest {
+
+    // Ventana mínima del lector
+    private static final int WINDOW = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsLineCrossingWindowBoundary() throws Exception {
+        String first = line(1, WINDOW - 100);
+        String crossing = line(2, 300);
+        String last = line(3, 50);
+        Path file = write(first + "\n" + crossing + "\n" + last + "\n");
+
+        assertEquals(List.of(first, crossing, last), readAll(file, 10));
+    }
+
+    @Test
+    void readsLineEndingExactlyAtWindowBoundary() throws Exception {
+        // El salto de línea es el último byte de la primera ventana
+        String first = line(1, WINDOW - 1);
+        String second = line(2, 200);
+        Path file = write(first + "\n" + second + "\n");
+
+        assertEquals(List.of(first, second), readAll(file, 10));
+    }
+
+    @Test
+    void readsManyWindowsInBatches() throws Exception {
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String line = line(i, 40 + (i * 37) % 200);
+            expected.add(line);
+            content.append(line).append('\n');
+        }
+        Path file = write(content.toString());
+
+        List<String> lines = new ArrayList<>();
+        try (MappedLineReader reader = new MappedLineReader(file, 7, WINDOW)) {
+            while (reader.hasNext()) {
+                LineBatch batch = reader.next();
+                assertFalse(batch.size() > 7);
+                lines.addAll(lines(batch));
+            }
+        }
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    void skipsEmptyLinesAndCarriageReturns() throws Exception {
+        Path file = write("{\"id\":1}\r\n\n\r\n{\"id\":2}\n\n{\"id\":3}");
+
+        assertEquals(List.of("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"), readAll(file, 10));
+    }
+
+    @Test
+    void emptyFileHasNoBatches() throws Exception {
+        try (MappedLineReader reader = new MappedLineReader(write(""), 10, WINDOW)) {
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void failsOnLineLargerThanWindow() throws Exception {
+        Path file = write(line(1, 100) + "\n" + line(2, WINDOW + 10) + "\n");
+
+        try (MappedLineReader reader = new MappedLineReader(file, 1, WINDOW)) {
+            assertEquals(List.of(line(1, 100)), lines(reader.next()));
+            assertThrows(UncheckedIOException.class, reader::hasNext);
+        }
+    }
+
+    /**
+     * Línea JSON de exactamente length bytes
+     */
+    private static String line(int id, int length) {
+        String prefix = "{\"id\":" + id + ",\"pad\":\"";
+        return prefix + "x".repeat(length - prefix.length() - 2) + "\"}";
+    }
+
+    private Path write(String content) throws Exception {
+        return Files.writeString(directory.resolve("records.jsonl"), content, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readAll(Path file, int batchLines) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (MappedLineReader reader = new MappedLineReader(file, batchLines, WINDOW)) {
+            reader.forEachRemaining(batch -> lines.addAll(lines(batch)));
+        }
+        return lines;
+    }
+
+    private static List<String> lines(LineBatch batch) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            lines.add(new String(batch.getData(), batch.start(i), batch.length(i), StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+}